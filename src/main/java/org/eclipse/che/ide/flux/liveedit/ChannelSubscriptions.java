@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The Flux channels the live documents are subscribed to, counted so that a channel shared by several documents
+ * (e.g. a project channel) is only left when the last of them is closed.
+ */
+public class ChannelSubscriptions {
+    private final Map<String, Integer> subscriptions = new HashMap<String, Integer>();
+
+    /** Returns true if the channel has to be joined. */
+    public boolean add(String channel) {
+        Integer count = subscriptions.get(channel);
+        subscriptions.put(channel, count == null ? 1 : count + 1);
+        return count == null;
+    }
+
+    /** Returns true if the channel has to be left. */
+    public boolean remove(String channel) {
+        Integer count = subscriptions.get(channel);
+        if (count == null) {
+            return false;
+        }
+        if (count > 1) {
+            subscriptions.put(channel, count - 1);
+            return false;
+        }
+        subscriptions.remove(channel);
+        return true;
+    }
+
+    public Set<String> getChannels() {
+        return subscriptions.keySet();
+    }
+}
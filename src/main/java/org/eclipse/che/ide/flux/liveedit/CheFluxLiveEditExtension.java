@@ -11,10 +11,12 @@
 package org.eclipse.che.ide.flux.liveedit;
 
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.google.gwt.storage.client.Storage;
 import com.google.gwt.user.client.Window;
 import com.google.inject.assistedinject.Assisted;
 import org.eclipse.che.api.machine.shared.dto.MachineProcessDto;
@@ -22,6 +24,9 @@ import org.eclipse.che.api.machine.shared.dto.event.MachineProcessEvent;
 import org.eclipse.che.api.promises.client.Operation;
 import org.eclipse.che.api.promises.client.OperationException;
 import org.eclipse.che.api.promises.client.Promise;
+import org.eclipse.che.ide.api.action.ActionManager;
+import org.eclipse.che.ide.api.action.DefaultActionGroup;
+import org.eclipse.che.ide.api.action.IdeActions;
 import org.eclipse.che.ide.api.app.AppContext;
 import org.eclipse.che.ide.api.editor.EditorAgent;
 import org.eclipse.che.ide.api.editor.EditorPartPresenter;
@@ -33,10 +38,10 @@ import org.eclipse.che.ide.api.editor.text.TextPosition;
 import org.eclipse.che.ide.api.editor.text.TextRange;
 import org.eclipse.che.ide.api.editor.texteditor.CursorModelWithHandler;
 import org.eclipse.che.ide.api.editor.texteditor.TextEditorPresenter;
+import org.eclipse.che.ide.api.event.FileEvent;
 import org.eclipse.che.ide.api.extension.Extension;
 import org.eclipse.che.ide.api.machine.MachineServiceClient;
 import org.eclipse.che.ide.api.notification.NotificationManager;
-import org.eclipse.che.ide.api.notification.StatusNotification;
 import org.eclipse.che.ide.extension.machine.client.command.CommandConfiguration;
 import org.eclipse.che.ide.extension.machine.client.command.CommandManager;
 import org.eclipse.che.ide.extension.machine.client.command.valueproviders.CommandPropertyValueProviderRegistry;
@@ -44,9 +49,12 @@ import org.eclipse.che.ide.api.workspace.WorkspaceReadyEvent;
 import org.eclipse.che.ide.rest.DtoUnmarshallerFactory;
 import org.eclipse.che.ide.socketio.Consumer;
 import org.eclipse.che.ide.socketio.Message;
+import org.eclipse.che.ide.socketio.OutboundQueue;
+import org.eclipse.che.ide.socketio.SharedSocketIO;
 import org.eclipse.che.ide.socketio.SocketIOOverlay;
 import org.eclipse.che.ide.socketio.SocketIOResources;
 import org.eclipse.che.ide.socketio.SocketOverlay;
+import org.eclipse.che.ide.socketio.WorkerSocketIO;
 import org.eclipse.che.ide.util.ListenerManager;
 import org.eclipse.che.ide.util.ListenerRegistrar;
 import org.eclipse.che.ide.util.loging.Log;
@@ -57,9 +65,12 @@ import org.eclipse.che.ide.websocket.events.MessageHandler;
 import org.eclipse.che.ide.websocket.rest.SubscriptionHandler;
 import org.eclipse.che.ide.websocket.rest.Unmarshallable;
 
-import com.google.gwt.core.client.JsonUtils;
+import com.google.gwt.core.client.Duration;
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.core.client.JsArray;
 import com.google.gwt.core.client.ScriptInjector;
-import com.google.gwt.core.shared.GWT;
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.core.client.RunAsyncCallback;
 import com.google.gwt.user.client.Timer;
 import com.google.inject.Inject;
 import com.google.web.bindery.event.shared.EventBus;
@@ -67,21 +78,21 @@ import com.google.web.bindery.event.shared.EventBus;
 import org.eclipse.che.ide.resource.Path;
 
 import static com.google.common.base.Strings.isNullOrEmpty;
-import static org.eclipse.che.ide.api.notification.ReadState.READ;
-import static org.eclipse.che.ide.api.notification.StatusNotification.Status.SUCCESS;
-import static org.eclipse.che.ide.api.notification.StatusNotification.DisplayMode.FLOAT_MODE;
 import static org.eclipse.che.ide.extension.machine.client.command.edit.EditCommandsPresenter.PREVIEW_URL_ATTR;
 
 
 @Extension(title = "Che Flux extension", version = "1.0.0")
 public class CheFluxLiveEditExtension{
 
-    private Map<String, Document>                liveDocuments   = new HashMap<String, Document>();
+    private LiveDocumentRegistry                 liveDocuments   = new LiveDocumentRegistry();
 
     private SocketOverlay                        socket;
 
     private boolean                              isUpdatingModel = false;
 
+    /* a local change is being added to the coalescer: the document holds it while the previous edit is flushed */
+    private boolean                              isAddingLocalChange;
+
     private MessageBus                           messageBus;
 
     private CommandManager                       commandManager;
@@ -97,18 +108,38 @@ public class CheFluxLiveEditExtension{
     private DtoUnmarshallerFactory               dtoUnmarshallerFactory;
 
     private EditorAgent editorAgent;
-    private TextEditorPresenter textEditor;
-    private EditorPartPresenter openedEditor;
-    private Path path;
-    private Document documentMain;
-    private CursorHandlerForPairProgramming cursorHandlerForPairProgramming;
     private boolean isDocumentChanged = false;
     private NotificationManager notificationManager;
-    private static Map<String,CursorHandlerForPairProgramming> cursorHandlers = new HashMap<String,CursorHandlerForPairProgramming>(); //if this is not static same user will have multiple cursor colours
-    private static int userCount = 0;
     private static final String channelName = "USER";
-    private String userId;
-    private CursorModelForPairProgramming cursorModelForPairProgramming;
+    private static final String USER_ID_KEY = "che.flux.liveedit.userId";
+    private static final String OFFLINE_EDITS_KEY = "che.flux.liveedit.offlineEdits:";
+    private final String userId;
+    private final LiveEditConfiguration configuration;
+    private final OutgoingEditCoalescer editCoalescer;
+    private final CursorPublisher cursorPublisher;
+    private final RemoteEditApplier remoteEditApplier;
+    private final RemoteCursorRenderer remoteCursorRenderer;
+    private final EditingNotifier editingNotifier;
+    private final ShadowBufferRegistry shadowBuffers;
+    private final CompactProtocol compactProtocol = new CompactProtocol();
+    private final ChannelSubscriptions subscriptions = new ChannelSubscriptions();
+    private final PeerRegistry peerRegistry;
+    /* whether the Flux server relays the events added by this plugin, which it tells by welcoming our hello */
+    private boolean serverExtended;
+    /* after a reconnection, the missing edits are fetched once the server has told whether it relays the requests */
+    private boolean resyncOnWelcome;
+    private final MessageStreamer messageStreamer;
+    private final OutboundQueue outboundQueue;
+    private final LiveEditMetrics metrics;
+    private FluxConnection fluxConnection;
+    private final Timer offlineReplayTimer = new Timer() {
+        @Override
+        public void run() {
+            for (LiveDocument liveDocument : liveDocuments.values()) {
+                replayOfflineEdits(liveDocument);
+            }
+        }
+    };
 
     @Inject
     public CheFluxLiveEditExtension(final MessageBusProvider messageBusProvider,
@@ -117,7 +148,12 @@ public class CheFluxLiveEditExtension{
                                     final DtoUnmarshallerFactory dtoUnmarshallerFactory,
                                     final AppContext appContext,
                                     final CommandManager commandManager,
-                                    final CommandPropertyValueProviderRegistry commandPropertyValueProviderRegistry, EditorAgent editorAgent, NotificationManager notificationManager) {
+                                    final CommandPropertyValueProviderRegistry commandPropertyValueProviderRegistry, EditorAgent editorAgent, NotificationManager notificationManager,
+                                    final LiveEditConfiguration configuration,
+                                    final LiveEditMetrics metrics,
+                                    final ActionManager actionManager,
+                                    final LiveEditMetricsAction metricsAction) {
+        double startTime = Duration.currentTimeMillis();
         this.dtoUnmarshallerFactory = dtoUnmarshallerFactory;
         this.commandManager = commandManager;
         this.messageBus = messageBusProvider.getMessageBus();
@@ -127,29 +163,210 @@ public class CheFluxLiveEditExtension{
         this.machineServiceClient = machineServiceClient;
         this.editorAgent = editorAgent;
         this.notificationManager = notificationManager;
+        this.configuration = configuration;
+        this.metrics = metrics;
+        this.userId = createUserId();
+        this.editCoalescer = new OutgoingEditCoalescer(configuration, new OutgoingEditCoalescer.FlushHandler() {
+            @Override
+            public void onFlush(Document document, int offset, int removedCharCount, String addedCharacters) {
+                if (socket == null) {
+                    return;
+                }
+                LiveDocument liveDocument = liveDocuments.get(document.getFile().getLocation().toString());
+                if (liveDocument != null && (!isConnected() || !liveDocument.getOfflineEdits().isEmpty())) {
+                    logOfflineEdit(liveDocument, offset, removedCharCount, addedCharacters);
+                    return;
+                }
+                List<Message> chunks = new ArrayList<Message>();
+                addLiveResourceChangeMessages(chunks, document, liveDocument, offset, removedCharCount, addedCharacters, !isAddingLocalChange);
+                messageStreamer.stream(chunks);
+                /* the peers move our cursor to the end of the edit: a cursor move sent before it is stale */
+                outboundQueue.discardLatest(getCursorKey(document));
+                cursorPublisher.markSent(document, offset + addedCharacters.length());
+            }
+        });
+        this.cursorPublisher = new CursorPublisher(configuration, new CursorPublisher.SendHandler() {
+            @Override
+            public boolean onSend(Document document, int offset) {
+                if (socket == null) {
+                    return false;
+                }
+                LiveDocument liveDocument = liveDocuments.get(document.getFile().getLocation().toString());
+                if (liveDocument != null && !liveDocument.getOfflineEdits().isEmpty()) {
+                    /* the offset is relative to edits the peers have not received yet */
+                    return false;
+                }
+                Message liveCursorOffsetChangeMessage;
+                if (liveDocument != null && canSendCompact()) {
+                    announceResource(liveDocument);
+                    liveCursorOffsetChangeMessage = new FluxMessageBuilder().withOffset(offset).withUserName(getChannel(liveDocument)) //
+                                                                            .buildCompactLiveCursorOffsetChangeMessage(compactProtocol.getLocalPeer(),
+                                                                                                                       getCompactResourceId(liveDocument));
+                } else {
+                    /*here withUserName method sets the channel name and the withchannelName sets the username*/
+                    liveCursorOffsetChangeMessage = new FluxMessageBuilder().with(document).withOffset(offset).withUserName(getChannel(liveDocument)) //
+                                                                            .withChannelName(userId).buildLiveCursorOffsetChangeMessage();
+                }
+                if (messageStreamer.isStreaming()) {
+                    /* the offset is relative to the text including the chunks still to be sent */
+                    messageStreamer.send(liveCursorOffsetChangeMessage);
+                } else {
+                    outboundQueue.sendLatest(getCursorKey(document), liveCursorOffsetChangeMessage);
+                }
+                return true;
+            }
+        });
 
-        injectSocketIO();
-        injectCssStyles();
+        this.outboundQueue = new OutboundQueue(configuration.getMaxInFlightMessages(), configuration.getAckTimeout(), new OutboundQueue.SendListener() {
+            @Override
+            public void onSent(Message message) {
+                metrics.recordSent(message);
+            }
+        });
+        metrics.setOutboundQueue(outboundQueue);
+        this.messageStreamer = new MessageStreamer(new MessageStreamer.Sender() {
+            @Override
+            public void send(Message message) {
+                if (socket != null) {
+                    outboundQueue.send(message);
+                }
+            }
+        });
+        this.peerRegistry = new PeerRegistry(configuration, new PeerRegistry.EvictionHandler() {
+            @Override
+            public void onEvicted(String peer) {
+                for (LiveDocument liveDocument : liveDocuments.values()) {
+                    liveDocument.removeRemoteCursor(peer);
+                    liveDocument.resetPeer(peer);
+                }
+                for (ShadowBuffer shadowBuffer : shadowBuffers.values()) {
+                    shadowBuffer.resetPeer(peer);
+                }
+                /* a peer gone without saying so would keep the compact messages disabled if it was a verbose one */
+                compactProtocol.peerLeft(peer);
+            }
+        });
+        this.remoteCursorRenderer = new RemoteCursorRenderer();
+        this.editingNotifier = new EditingNotifier(configuration, notificationManager);
+        this.shadowBuffers = new ShadowBufferRegistry(configuration, new ShadowBufferRegistry.EvictionHandler() {
+            @Override
+            public void onEvicted(ShadowBuffer shadowBuffer) {
+                /* its edits are no longer followed: the resource is loaded again when opened */
+                unsubscribe(getChannel(shadowBuffer.getProject(), shadowBuffer.getResource()));
+            }
+        });
+        this.remoteEditApplier = new RemoteEditApplier(configuration, new RemoteEditApplier.BatchHandler() {
+            @Override
+            public void apply(LiveDocument liveDocument, List<LiveEdit> edits) {
+                applyRemoteEdits(liveDocument, edits);
+            }
+        });
 
         connectToFluxOnProjectLoaded();
 
         connectToFluxOnFluxProcessStarted();
 
         sendFluxMessageOnDocumentModelChanged();
+
+        trackFileOperations();
+
+        announceLeaveOnWindowClosing();
+
+        registerMetricsAction(actionManager, metricsAction);
+
+        metrics.recordStartup("extension constructor", Duration.currentTimeMillis() - startTime);
     }
 
 
-    private void injectCssStyles(){
-        com.google.gwt.dom.client.StyleInjector.inject(".pairProgramminigUser1 { outline: 1px solid #f3ff20; animation: blinker 1s linear infinite;} @keyframes blinker { 50% { opacity: 0.0; }}");
-        com.google.gwt.dom.client.StyleInjector.inject(".pairProgramminigUser2 { outline: 1px solid #10ff22; animation: blinker 1s linear infinite;} @keyframes blinker { 50% { opacity: 0.0; }}");
-        com.google.gwt.dom.client.StyleInjector.inject(".pairProgramminigUser3 { outline: 1px solid #00a1ff; animation: blinker 1s linear infinite;} @keyframes blinker { 50% { opacity: 0.0; }}");
-        com.google.gwt.dom.client.StyleInjector.inject(".pairProgramminigUser4 { outline: 1px solid #ff00fb; animation: blinker 1s linear infinite;} @keyframes blinker { 50% { opacity: 0.0; }}");
-        com.google.gwt.dom.client.StyleInjector.inject(".pairProgramminigUser5 { outline: 1px solid #10fdff; animation: blinker 1s linear infinite;} @keyframes blinker { 50% { opacity: 0.0; }}");
+    /**
+     * One identity per IDE tab, shared by all the documents. It is kept across reloads of the tab when configured to,
+     * using the session storage; a duplicated tab then starts with the same identity, hence the opt-in.
+     */
+    private String createUserId() {
+        Storage storage = configuration.isPersistPeerIdentity() ? Storage.getSessionStorageIfSupported() : null;
+        String id = storage != null ? storage.getItem(USER_ID_KEY) : null;
+        if (id == null) {
+            id = "user" + Math.random();
+            if (storage != null) {
+                storage.setItem(USER_ID_KEY, id);
+            }
+        }
+        return id;
     }
 
-    private void injectSocketIO() {
+    /**
+     * Tells the peers we are leaving, so that they release our cursors and state right away instead of after the idle timeout,
+     * if the server relays the message.
+     */
+    private void announceLeaveOnWindowClosing() {
+        Window.addWindowClosingHandler(new Window.ClosingHandler() {
+            @Override
+            public void onWindowClosing(Window.ClosingEvent event) {
+                if (socket != null && serverExtended) {
+                    emit(new FluxMessageBuilder().withUserName(channelName).withChannelName(userId).buildLeaveMessage());
+                }
+            }
+        });
+    }
+
+    private void registerMetricsAction(ActionManager actionManager, LiveEditMetricsAction metricsAction) {
+        actionManager.registerAction("liveEditMetrics", metricsAction);
+        DefaultActionGroup helpGroup = (DefaultActionGroup)actionManager.getAction(IdeActions.GROUP_HELP);
+        helpGroup.add(metricsAction);
+    }
+
+    /**
+     * Loads the socket.io client and the connection code the first time a Flux process is found,
+     * so that the sessions that never pair do not pay for them.
+     */
+    private void loadFluxClient(final Runnable onLoaded) {
+        if (fluxConnection != null) {
+            onLoaded.run();
+            return;
+        }
+        final double startTime = Duration.currentTimeMillis();
+        GWT.runAsync(CheFluxLiveEditExtension.class, new RunAsyncCallback() {
+            @Override
+            public void onFailure(Throwable reason) {
+                Log.error(getClass(), reason);
+            }
+
+            @Override
+            public void onSuccess() {
+                if (fluxConnection == null) {
+                    fluxConnection = new FluxConnection(configuration, commandManager, loadSocketIO(), new FluxConnection.Handler() {
+                        @Override
+                        public void onSocketOpened(SocketOverlay socket) {
+                            listenToFlux(socket);
+                        }
+
+                        @Override
+                        public void onConnected(SocketOverlay socket, boolean reconnected) {
+                            joinFluxChannel(reconnected);
+                        }
+                    });
+                    metrics.recordStartup("flux client load", Duration.currentTimeMillis() - startTime);
+                }
+                onLoaded.run();
+            }
+        });
+    }
+
+    /**
+     * The socket.io client, running in a worker when configured and supported, in the page otherwise, and sharing
+     * its connections with the other tabs when configured and supported.
+     */
+    private SocketIOOverlay loadSocketIO() {
         SocketIOResources ioresources = GWT.create(SocketIOResources.class);
-        ScriptInjector.fromString(ioresources.socketIo().getText()).setWindow(ScriptInjector.TOP_WINDOW).inject();
+        SocketIOOverlay io;
+        if (configuration.isWorkerConnection() && WorkerSocketIO.isSupported()) {
+            io = WorkerSocketIO.create(ioresources.socketIo().getText(), ioresources.socketIoWorker().getText(),
+                                       configuration.getWorkerBatchWindow());
+        } else {
+            ScriptInjector.fromString(ioresources.socketIo().getText()).setWindow(ScriptInjector.TOP_WINDOW).inject();
+            io = getSocketIO();
+        }
+        return configuration.isSharedConnection() && SharedSocketIO.isSupported() ? SharedSocketIO.create(io) : io;
     }
 
     private void connectToFluxOnProjectLoaded() {
@@ -180,154 +397,741 @@ public class CheFluxLiveEditExtension{
             return false;
         }
         if ("flux".equals(descriptor.getName())) {
-            String urlToSubstitute = "http://${server.port.3000}";
+            final String urlToSubstitute = "http://${server.port.3000}";
             if (commandPropertyValueProviderRegistry == null) {
                 return false;
             }
-            substituteAndConnect(urlToSubstitute);
+            loadFluxClient(new Runnable() {
+                @Override
+                public void run() {
+                    fluxConnection.start(urlToSubstitute);
+                }
+            });
             return true;
         }
         return false;
     }
 
-    int trySubstitude = 10;
+    private void listenToFlux(SocketOverlay socket) {
+        this.socket = socket;
+        outboundQueue.attach(socket);
 
-    public void substituteAndConnect(final String previewUrl) {
-            commandManager.substituteProperties(previewUrl).then(new Operation<String>() {
-                @Override
-                public void apply(final String url) throws OperationException {
-                    if (url.contains("$")){
-                        Timer t = new Timer() {
-                            @Override
-                            public void run() {
-                               substituteAndConnect(url);
-                            }
-                        };
-                        Log.info(CheFluxLiveEditExtension.class,"Retrieving the preview url for " + url);
-                        t.schedule(1000);
-                        return;
-                    }
-                    connectToFlux(url);
+        on(socket, "liveResourceChanged", new Consumer<FluxResourceChangedEventDataOverlay>() {
+            @Override
+            public void accept(FluxResourceChangedEventDataOverlay event) {
+                compactProtocol.verboseMessageReceived(event.getChannelName());
+                LiveDocument liveDocument = liveDocuments.get(event.getProject(), event.getResource());
+                if (liveDocument == null) {
+                    receiveShadowEdit(event.getProject(), event.getResource(), LiveEdit.fromEvent(event.getChannelName(), event));
+                    return;
+                }
+                LiveEdit edit = stamp(LiveEdit.fromEvent(event.getChannelName(), event), event.getOriginTime());
+                receiveRemoteEdit(liveDocument, edit);
+                if (event.hasChecksum()) {
+                    expectChecksum(liveDocument, edit, event.getChecksum(), event.getVersions());
+                }
+            }
+        });
 
+        on(socket, "liveResourceClosed", new Consumer<FluxResourceChangedEventDataOverlay>() {
+            @Override
+            public void accept(FluxResourceChangedEventDataOverlay event) {
+                if (event.getChannelName() == null || event.getChannelName().equals(userId)) {
+                    return;
+                }
+                LiveDocument liveDocument = liveDocuments.get(event.getProject(), event.getResource());
+                if (liveDocument == null) {
+                    ShadowBuffer shadowBuffer = shadowBuffers.get(event.getProject(), event.getResource());
+                    if (shadowBuffer != null) {
+                        shadowBuffer.resetPeer(event.getChannelName());
+                    }
+                    return;
+                }
+                liveDocument.removeRemoteCursor(event.getChannelName());
+                /* its edits will be numbered from scratch if it opens the resource again */
+                liveDocument.resetPeer(event.getChannelName());
+            }
+        });
 
+        on(socket, "liveEditLeave", new Consumer<FluxResourceChangedEventDataOverlay>() {
+            @Override
+            public void accept(FluxResourceChangedEventDataOverlay event) {
+                if (event.getChannelName() == null || event.getChannelName().equals(userId)) {
+                    return;
                 }
-            });
-    }
+                peerRegistry.remove(event.getChannelName());
+                compactProtocol.peerLeft(event.getChannelName());
+            }
+        });
 
-    int retryConnectToFlux = 5;
+        on(socket, "lrc", new Consumer<FluxCompactEventDataOverlay>() {
+            @Override
+            public void accept(FluxCompactEventDataOverlay event) {
+                String[] resource = getCompactResource(event);
+                if (resource == null) {
+                    return;
+                }
+                LiveEdit edit = stamp(new LiveEdit(compactProtocol.getPeer(event.getPeer()), event.getSequence(), event.getOffset(),
+                                                   event.getRemovedCharCount(), event.getAddedCharacters()), event.getOriginTime());
+                LiveDocument liveDocument = liveDocuments.get(resource[0], resource[1]);
+                if (liveDocument == null) {
+                    receiveShadowEdit(resource[0], resource[1], edit);
+                    return;
+                }
+                receiveRemoteEdit(liveDocument, edit);
+                if (event.hasChecksum()) {
+                    expectChecksum(liveDocument, edit, event.getChecksum(), event.getVersions());
+                }
+            }
+        });
 
-    protected void connectToFlux(final String url) {
+        /* a stock server relays the requests and snapshots of the Flux protocol, but not ours */
+        Consumer<FluxResourceOperationsEventDataOverlay> snapshotRequestHandler = new Consumer<FluxResourceOperationsEventDataOverlay>() {
+            @Override
+            public void accept(FluxResourceOperationsEventDataOverlay request) {
+                if (userId == null || !userId.equals(request.getPeer())) {
+                    return;
+                }
+                LiveDocument liveDocument = liveDocuments.get(request.getProject(), request.getResource());
+                if (liveDocument != null) {
+                    sendSnapshot(liveDocument, request.getChannelName());
+                }
+            }
+        };
+        on(socket, "getLiveResourceRequest", snapshotRequestHandler);
+        on(socket, "liveResourceStarted", snapshotRequestHandler);
 
-        final SocketIOOverlay io = getSocketIO();
-        Log.info(getClass(), "connecting to " + url);
+        Consumer<FluxResourceSnapshotEventDataOverlay> snapshotHandler = new Consumer<FluxResourceSnapshotEventDataOverlay>() {
+            @Override
+            public void accept(FluxResourceSnapshotEventDataOverlay snapshot) {
+                if (userId == null || !userId.equals(snapshot.getPeer())) {
+                    return;
+                }
+                LiveDocument liveDocument = liveDocuments.get(snapshot.getProject(), snapshot.getResource());
+                if (liveDocument == null) {
+                    return;
+                }
+                String content = liveDocument.snapshotChunkReceived(snapshot.getChannelName(), snapshot.getChunk(), snapshot.getChunkCount(),
+                                                                    snapshot.getContent());
+                if (content == null) {
+                    return;
+                }
+                if (!liveDocument.getOfflineEdits().isEmpty()) {
+                    /* our edits made while disconnected win, the peer gets our content once they are sent */
+                    liveDocument.getOfflineEdits().addConflict(snapshot.getChannelName());
+                    return;
+                }
+                applySnapshot(liveDocument, content, snapshot.getVersions());
+            }
+        };
+        on(socket, "liveResourceSnapshot", snapshotHandler);
+        on(socket, "liveResourceStartedResponse", snapshotHandler);
 
-        socket = io.connect(url);
-        socket.on("error", new Runnable() {
+        on(socket, "getLiveResourceOperationsRequest", new Consumer<FluxResourceOperationsEventDataOverlay>() {
             @Override
-            public void run() {
-                Log.info(getClass(), "error connecting to " + url);
+            public void accept(FluxResourceOperationsEventDataOverlay request) {
+                if (userId == null || !userId.equals(request.getPeer())) {
+                    return;
+                }
+                LiveDocument liveDocument = liveDocuments.get(request.getProject(), request.getResource());
+                if (liveDocument == null) {
+                    return;
+                }
+                editCoalescer.flush();
+                Message response = new FluxMessageBuilder().with(liveDocument).withUserName(getChannel(liveDocument)).withChannelName(userId) //
+                                                           .buildLiveResourceOperationsResponseMessage(request.getChannelName(),
+                                                                                                       liveDocument.getLocalEditsSince(request.getSequence()));
+                messageStreamer.send(response);
             }
         });
 
-        socket.on("liveResourceChanged", new Consumer<FluxResourceChangedEventDataOverlay>() {
+        on(socket, "liveResourceOperationsResponse", new Consumer<FluxResourceOperationsEventDataOverlay>() {
             @Override
-            public void accept(FluxResourceChangedEventDataOverlay event) {
-                Document document = liveDocuments.get("/" + event.getProject() + "/" + event.getResource());
-                if (document == null) {
+            public void accept(FluxResourceOperationsEventDataOverlay response) {
+                if (userId == null || !userId.equals(response.getPeer())) {
                     return;
                 }
+                LiveDocument liveDocument = liveDocuments.get(response.getProject(), response.getResource());
+                if (liveDocument == null) {
+                    return;
+                }
+                String peer = response.getChannelName();
+                if (!response.isComplete()) {
+                    reloadDocument(liveDocument, peer);
+                } else {
+                    liveDocument.resyncCompleted(peer);
+                    JsArray<FluxResourceChangedEventDataOverlay> operations = response.getOperations();
+                    for (int i = 0; i < operations.length(); i++) {
+                        receiveRemoteEdit(liveDocument, LiveEdit.fromEvent(peer, operations.get(i)));
+                    }
+                }
+                if (!liveDocument.isResyncPending()) {
+                    replayOfflineEdits(liveDocument);
+                }
+            }
+        });
 
-                isUpdatingModel = true;
-                path = document.getFile().getLocation();
-                openedEditor = editorAgent.getOpenedEditor(path);
-                if (openedEditor instanceof TextEditorPresenter){
-                    textEditor  = (TextEditorPresenter)openedEditor;
+        on(socket, "liveCursorOffsetChanged", new Consumer<FluxResourceChangedEventDataOverlay>() {
+            @Override
+            public void accept(FluxResourceChangedEventDataOverlay event) {
+                compactProtocol.verboseMessageReceived(event.getChannelName());
+                LiveDocument liveDocument = liveDocuments.get(event.getProject(), event.getResource());
+                if (liveDocument != null) {
+                    receiveRemoteCursor(liveDocument, event.getChannelName(), event.getOffset());
                 }
+            }
+        });
 
-                String annotationStyle;
-                String username = event.getChannelName();
-                updateCursorHandler(username);
+        on(socket, "lcc", new Consumer<FluxCompactEventDataOverlay>() {
+            @Override
+            public void accept(FluxCompactEventDataOverlay event) {
+                LiveDocument liveDocument = getCompactLiveDocument(event);
+                if (liveDocument != null) {
+                    receiveRemoteCursor(liveDocument, compactProtocol.getPeer(event.getPeer()), event.getCursorOffset());
+                }
+            }
+        });
 
-                cursorHandlerForPairProgramming = cursorHandlers.get(username);
-                annotationStyle = "pairProgramminigUser"+ cursorHandlerForPairProgramming.getUserId();
-                int offset = event.getOffset();
+        on(socket, "liveEditWelcome", new Runnable() {
+            @Override
+            public void run() {
+                compactProtocol.serverWelcomed();
+                serverExtended = true;
+                if (resyncOnWelcome) {
+                    resyncOnWelcome = false;
+                    /* edits sent while we were away are fetched from their authors, not by reloading the files */
+                    for (LiveDocument liveDocument : liveDocuments.values()) {
+                        for (String peer : liveDocument.getPeers()) {
+                            requestMissingEdits(liveDocument, peer);
+                        }
+                        if (!liveDocument.isResyncPending()) {
+                            replayOfflineEdits(liveDocument);
+                        }
+                    }
+                }
+            }
+        });
 
-                if (openedEditor == null){
-                    StatusNotification statusNotification = new StatusNotification(document.getFile().getLocation().toString()+" is being edited",SUCCESS,FLOAT_MODE);
-                    statusNotification.setState(READ);
-                    notificationManager.notify(statusNotification);
+        on(socket, "liveEditHello", new Consumer<FluxHelloEventDataOverlay>() {
+            @Override
+            public void accept(FluxHelloEventDataOverlay hello) {
+                if (hello.getChannelName() == null || hello.getChannelName().equals(userId)) {
                     return;
                 }
-                if (event.getRemovedCharCount()==0){
-                    offset ++;
+                int localPeer = compactProtocol.getLocalPeer();
+                compactProtocol.helloReceived(hello.getPeer(), hello.getChannelName(), userId, hello.isReply());
+                if (!hello.isReply() || localPeer != compactProtocol.getLocalPeer()) {
+                    sayHello(localPeer == compactProtocol.getLocalPeer());
                 }
-                String addedCharacters = event.getAddedCharacters();
-                TextPosition cursorPosition = document.getCursorPosition();
-                document.replace(event.getOffset(), event.getRemovedCharCount(), addedCharacters);
-                document.setCursorPosition(cursorPosition);
-                TextPosition markerPosition = textEditor.getDocument().getPositionFromIndex(offset);
-                TextRange textRange = new TextRange(markerPosition, markerPosition);
-                if (cursorHandlerForPairProgramming.getMarkerRegistration()!= null){
-                    cursorHandlerForPairProgramming.clearMark();
+            }
+        });
+
+        on(socket, "liveEditResource", new Consumer<FluxCompactEventDataOverlay>() {
+            @Override
+            public void accept(FluxCompactEventDataOverlay definition) {
+                compactProtocol.resourceDefined(definition.getPeer(), definition.getResourceId(), definition.getProjectName(),
+                                                definition.getResourceName());
+            }
+        });
+
+        on(socket, "liveEditApplied", new Consumer<FluxLiveEditAppliedEventDataOverlay>() {
+            @Override
+            public void accept(FluxLiveEditAppliedEventDataOverlay applied) {
+                if (userId.equals(applied.getPeer())) {
+                    metrics.recordRoundTrip(LiveEditMetrics.now() - applied.getTime(), applied.getDelay());
                 }
-                cursorHandlerForPairProgramming.setMarkerRegistration(textEditor.getHasTextMarkers().addMarker(textRange,annotationStyle));
-                cursorHandlers.remove(username);
-                cursorHandlers.put(username,cursorHandlerForPairProgramming);
-                isUpdatingModel = false;
             }
         });
+    }
 
-        socket.on("liveCursorOffsetChanged", new Consumer<FluxResourceChangedEventDataOverlay>() {
+    /** Registers a message handler, measuring the messages received and the time spent handling them. */
+    private <T extends JavaScriptObject> void on(SocketOverlay socket, final String type, final Consumer<T> handler) {
+        socket.on(type, new Consumer<T>() {
             @Override
-            public void accept(FluxResourceChangedEventDataOverlay event) {
-                Document document = liveDocuments.get("/" + event.getProject() + "/" + event.getResource());
-                if (document == null) {
+            public void accept(T payload) {
+                if (!metrics.isEnabled()) {
+                    handler.accept(payload);
                     return;
                 }
+                double startTime = LiveEditMetrics.now();
+                handler.accept(payload);
+                metrics.recordReceived(type, LiveEditMetrics.now() - startTime);
+            }
+        });
+    }
 
-                isUpdatingModel = true;
-                path = document.getFile().getLocation();
-                openedEditor = editorAgent.getOpenedEditor(path);
-                if (openedEditor instanceof TextEditorPresenter){
-                    textEditor  = (TextEditorPresenter)openedEditor;
+    private void on(SocketOverlay socket, final String type, final Runnable handler) {
+        on(socket, type, new Consumer<JavaScriptObject>() {
+            @Override
+            public void accept(JavaScriptObject payload) {
+                handler.run();
+            }
+        });
+    }
+
+    /** Emits a control message right away, ahead of the queued ones. */
+    private void emit(Message message) {
+        metrics.recordSent(message);
+        socket.emit(message);
+    }
+
+    private void joinFluxChannel(boolean reconnected) {
+        /* the workspace channel still carries the hellos of the compact protocol */
+        emit(new FluxMessageBuilder().withUserName(channelName).buildConnectToChannelMessage());
+        for (String channel : subscriptions.getChannels()) {
+            if (!channel.equals(channelName)) {
+                emit(new FluxMessageBuilder().withUserName(channel).buildConnectToChannelMessage());
+            }
+        }
+        compactProtocol.connectionReset();
+        /* the server may have been replaced while we were away: it tells again whether it is extended by welcoming our hello */
+        serverExtended = false;
+        resyncOnWelcome = reconnected;
+        sayHello(false);
+        /* what was sent while disconnected goes out once the channels are joined again */
+        outboundQueue.resume();
+        if (!reconnected) {
+            /* the checksums did not follow the edits typed before the socket existed */
+            for (LiveDocument liveDocument : liveDocuments.values()) {
+                if (liveDocument.getOfflineEdits().isEmpty()) {
+                    liveDocument.resetChecksum();
                 }
+                replayOfflineEdits(liveDocument);
+            }
+        }
+        /*
+         * after a reconnection, our edits made while disconnected are sent once rebased on the fetched ones, or when the
+         * server does not welcome us or the peers are too slow to answer: the gaps are then repaired by snapshots
+         */
+        offlineReplayTimer.schedule(configuration.getResyncTimeout());
+        /* the cursor moves made before connecting */
+        cursorPublisher.flush();
+    }
 
-                String annotationStyle;
-                String username = event.getChannelName();
-                updateCursorHandler(username);
+    /** The changes made from now on are not the user's: they are neither sent nor move our cursor for the peers. */
+    private void beginModelUpdate() {
+        isUpdatingModel = true;
+        cursorPublisher.suspend();
+    }
 
-                cursorHandlerForPairProgramming = cursorHandlers.get(username);
-                annotationStyle = "pairProgramminigUser"+ cursorHandlerForPairProgramming.getUserId();
-                int offset = event.getOffset();
-                /*if removed count equals to -100 that means there is only a cursor change */
-                    TextPosition markerPosition = textEditor.getDocument().getPositionFromIndex(offset);
-                    TextRange textRange = new TextRange(markerPosition, markerPosition);
-                    if (cursorHandlerForPairProgramming.getMarkerRegistration()!= null){
-                        cursorHandlerForPairProgramming.clearMark();
-                    }
-                    cursorHandlerForPairProgramming.setMarkerRegistration(textEditor.getHasTextMarkers().addMarker(textRange,annotationStyle));
-                    cursorHandlers.remove(username);
-                    cursorHandlers.put(username,cursorHandlerForPairProgramming);
-                    isUpdatingModel = false;
+    private void endModelUpdate() {
+        isUpdatingModel = false;
+        cursorPublisher.resume();
+    }
+
+    private boolean isConnected() {
+        return fluxConnection != null && fluxConnection.getState() == FluxConnection.State.CONNECTED;
+    }
+
+    private void logOfflineEdit(LiveDocument liveDocument, int offset, int removedCharCount, String addedCharacters) {
+        liveDocument.getOfflineEdits().add(new LiveEdit(userId, 0, offset, removedCharCount, addedCharacters), liveDocument.getChecksum());
+        persistOfflineEdits(liveDocument);
+    }
+
+    /** Sends the edits made while disconnected as one batch, then our content to the peers whose edits conflicted with them. */
+    private void replayOfflineEdits(LiveDocument liveDocument) {
+        OfflineEditLog offlineEdits = liveDocument.getOfflineEdits();
+        if (offlineEdits.isEmpty() || !isConnected()) {
+            return;
+        }
+        /* the edits still buffered join the log, the remote edits still queued are rebased on it */
+        editCoalescer.flush();
+        remoteEditApplier.flush();
+        List<Message> batch = new ArrayList<Message>();
+        for (LiveEdit edit : offlineEdits.getEdits()) {
+            addLiveResourceChangeMessages(batch, liveDocument.getDocument(), liveDocument, edit.getOffset(), edit.getRemovedCharCount(),
+                                          edit.getAddedCharacters(), false);
+        }
+        List<String> conflictPeers = new ArrayList<String>(offlineEdits.getConflictPeers());
+        liveDocument.offlineEditsReplayed();
+        persistOfflineEdits(liveDocument);
+        messageStreamer.stream(batch);
+        for (String peer : conflictPeers) {
+            sendSnapshot(liveDocument, peer);
+        }
+        /* the cursor moves made on top of the offline edits */
+        cursorPublisher.flush();
+    }
+
+    private void persistOfflineEdits(LiveDocument liveDocument) {
+        Storage storage = configuration.isPersistOfflineEdits() ? Storage.getLocalStorageIfSupported() : null;
+        if (storage == null) {
+            return;
+        }
+        String key = OFFLINE_EDITS_KEY + liveDocument.getLocation();
+        if (liveDocument.getOfflineEdits().isEmpty()) {
+            storage.removeItem(key);
+        } else {
+            storage.setItem(key, liveDocument.getOfflineEdits().toJson());
+        }
+    }
+
+    /** Applies the edits logged before the IDE was reloaded, if the resource is still the one they were made on. */
+    private void restoreOfflineEdits(LiveDocument liveDocument) {
+        Storage storage = configuration.isPersistOfflineEdits() ? Storage.getLocalStorageIfSupported() : null;
+        String json = storage != null ? storage.getItem(OFFLINE_EDITS_KEY + liveDocument.getLocation()) : null;
+        if (json == null) {
+            return;
+        }
+        OfflineEditLog offlineEdits = liveDocument.getOfflineEdits();
+        offlineEdits.restore(json, userId);
+        if (offlineEdits.getBaseChecksum() != liveDocument.getChecksum()) {
+            Log.info(getClass(), "discarding the offline edits of " + liveDocument.getLocation() + ", it has changed since");
+            offlineEdits.clear();
+            persistOfflineEdits(liveDocument);
+            return;
+        }
+        Document document = liveDocument.getDocument();
+        beginModelUpdate();
+        for (LiveEdit edit : offlineEdits.getEdits()) {
+            document.replace(edit.getOffset(), edit.getRemovedCharCount(), edit.getAddedCharacters());
+        }
+        endModelUpdate();
+        replayOfflineEdits(liveDocument);
+    }
+
+    /** The channel the events of the document travel on, see {@link LiveEditConfiguration.ChannelScope}. */
+    private String getChannel(LiveDocument liveDocument) {
+        return liveDocument == null ? channelName : getChannel(liveDocument.getProject(), liveDocument.getResource());
+    }
+
+    private String getChannel(String project, String resource) {
+        switch (configuration.getChannelScope()) {
+            case RESOURCE:
+                return channelName + "/" + project + "/" + resource;
+            case PROJECT:
+                return channelName + "/" + project;
+            default:
+                return channelName;
+        }
+    }
+
+    private static String getCursorKey(Document document) {
+        return "cursor:" + document.getFile().getLocation();
+    }
+
+    private void subscribe(LiveDocument liveDocument) {
+        String channel = getChannel(liveDocument);
+        if (subscriptions.add(channel) && !channel.equals(channelName)) {
+            messageStreamer.send(new FluxMessageBuilder().withUserName(channel).buildConnectToChannelMessage());
+            /* the peers already on the channel announced their resources before we joined it */
+            sayHello(false);
+        }
+    }
+
+    private void unsubscribe(LiveDocument liveDocument) {
+        unsubscribe(getChannel(liveDocument));
+    }
+
+    private void unsubscribe(String channel) {
+        if (subscriptions.remove(channel) && !channel.equals(channelName)) {
+            messageStreamer.send(new FluxMessageBuilder().withUserName(channel).buildDisconnectFromChannelMessage());
+        }
+    }
+
+    /**
+     * Records a local edit and adds the messages sending it. A large paste is streamed as consecutive edits that
+     * the peers apply as they arrive. When the document is current, holding no other unsent edit, the last one
+     * carries the checksum if one is due.
+     */
+    private void addLiveResourceChangeMessages(List<Message> messages, Document document, LiveDocument liveDocument, int offset,
+                                               int removedCharCount, String addedCharacters, boolean current) {
+        if (liveDocument != null) {
+            liveDocument.localEditSent(offset, removedCharCount, addedCharacters, current);
+        }
+        int chunkSize = configuration.getChunkSize() > 0 ? configuration.getChunkSize() : addedCharacters.length();
+        int start = 0;
+        do {
+            int end = Math.min(addedCharacters.length(), start + chunkSize);
+            if (end < addedCharacters.length() && end - 1 > start && Character.isHighSurrogate(addedCharacters.charAt(end - 1))) {
+                end--;
             }
-        });
+            messages.add(buildLiveResourceChangeMessage(document, liveDocument, offset + start, start == 0 ? removedCharCount : 0,
+                                                        addedCharacters.substring(start, end), current && end == addedCharacters.length()));
+            start = end;
+        } while (start < addedCharacters.length());
+    }
+
+    private Message buildLiveResourceChangeMessage(Document document, LiveDocument liveDocument, int offset, int removedCharCount,
+                                                   String addedCharacters, boolean last) {
+        LiveEdit edit = liveDocument != null ? liveDocument.recordLocalEdit(userId, offset, removedCharCount, addedCharacters)
+                                             : new LiveEdit(userId, 0, offset, removedCharCount, addedCharacters);
+        /*here withUserName method sets the channel name and the withchannelName sets the username*/
+        FluxMessageBuilder builder = new FluxMessageBuilder().with(document).with(edit).withUserName(getChannel(liveDocument)).withChannelName(userId);
+        if (last && liveDocument != null && liveDocument.isChecksumDue(Duration.currentTimeMillis(), configuration.getChecksumInterval())) {
+            builder.withChecksum(liveDocument.getChecksum(), liveDocument.getVersions(userId));
+        }
+        if (last && metrics.isLatencySampleDue()) {
+            builder.withOriginTime(LiveEditMetrics.now());
+        }
+        if (liveDocument != null && canSendCompact()) {
+            announceResource(liveDocument);
+            return builder.withCompressionThreshold(configuration.getCompressionThreshold()) //
+                          .buildCompactLiveResourceChangeMessage(compactProtocol.getLocalPeer(), getCompactResourceId(liveDocument));
+        }
+        return builder.buildLiveResourceChangeMessage();
+    }
+
+    /** Says hello even if the compact protocol is disabled: the server's welcome tells it relays our events. */
+    private void sayHello(boolean reply) {
+        if (socket == null || userId == null) {
+            return;
+        }
+        emit(new FluxMessageBuilder().withUserName(channelName).withChannelName(userId) //
+                                     .buildHelloMessage(compactProtocol.getLocalPeer(), reply));
+    }
+
+    private LiveDocument getCompactLiveDocument(FluxCompactEventDataOverlay event) {
+        String[] resource = getCompactResource(event);
+        return resource == null ? null : liveDocuments.get(resource[0], resource[1]);
+    }
+
+    /** The project and resource names of a compact message, null if they are not known yet. */
+    private String[] getCompactResource(FluxCompactEventDataOverlay event) {
+        String[] resource = compactProtocol.getResource(event.getPeer(), event.getResourceId());
+        if (resource == null || compactProtocol.getPeer(event.getPeer()) == null) {
+            /* we missed the peer's announcements: saying hello makes it announce everything again */
+            if (compactProtocol.announcementsMissed(event.getPeer())) {
+                sayHello(false);
+            }
+            return null;
+        }
+        return resource;
+    }
+
+    private boolean canSendCompact() {
+        return configuration.isCompactProtocol() && compactProtocol.canSend();
+    }
+
+    private int getCompactResourceId(LiveDocument liveDocument) {
+        return compactProtocol.getResourceId(liveDocument.getProject(), liveDocument.getResource());
+    }
+
+    private void announceResource(LiveDocument liveDocument) {
+        if (compactProtocol.markAnnounced(liveDocument.getProject(), liveDocument.getResource())) {
+            messageStreamer.send(new FluxMessageBuilder().with(liveDocument).withUserName(getChannel(liveDocument)) //
+                                                         .buildCompactResourceMessage(compactProtocol.getLocalPeer(),
+                                                                                      getCompactResourceId(liveDocument)));
+        }
+    }
+
+    private void receiveRemoteCursor(LiveDocument liveDocument, String peer, int offset) {
+        if (liveDocument.getTextEditor() == null) {
+            return;
+        }
+        /* the offset is relative to the text including the edits the peer made before */
+        if (remoteEditApplier.hasQueuedEdits(liveDocument)) {
+            remoteEditApplier.flush();
+        }
+        moveRemoteCursor(liveDocument, peer, offset);
+    }
+
+    private void expectChecksum(LiveDocument liveDocument, LiveEdit edit, int checksum, Map<String, Integer> versions) {
+        if (liveDocument.getAppliedSequence(edit.getPeer()) == edit.getSequence()) {
+            liveDocument.expectChecksum(edit.getPeer(), checksum, versions);
+        }
+    }
 
-        socket.emit("connectToChannel", JsonUtils.safeEval("{\"channel\" : \""+channelName+"\"}"));
+    private LiveEdit stamp(LiveEdit edit, double originTime) {
+        return originTime > 0 && metrics.isEnabled() ? edit.withTiming(originTime, LiveEditMetrics.now()) : edit;
     }
 
-    private void updateCursorHandler(String username){
-        if (cursorHandlers.get(username)==null){
-            cursorHandlerForPairProgramming = new CursorHandlerForPairProgramming();
-            cursorHandlerForPairProgramming.setUser(username);
-            if (userCount==5){
-                userCount =0;
+    private void receiveRemoteEdit(LiveDocument liveDocument, LiveEdit edit) {
+        peerRegistry.touch(edit.getPeer());
+        enqueueRemoteEdits(liveDocument, liveDocument.receive(edit));
+        if (liveDocument.hasGap(edit.getPeer())) {
+            requestMissingEdits(liveDocument, edit.getPeer());
+        }
+    }
+
+    /** Queues remote edits ready to be applied, in order. */
+    private void enqueueRemoteEdits(LiveDocument liveDocument, List<LiveEdit> readyEdits) {
+        OfflineEditLog offlineEdits = liveDocument.getOfflineEdits();
+        if (offlineEdits.isEmpty()) {
+            for (LiveEdit readyEdit : readyEdits) {
+                remoteEditApplier.enqueue(liveDocument, readyEdit);
             }
-            userCount++;
-            cursorHandlerForPairProgramming.setUserId(userCount);
-            cursorHandlers.put(username,cursorHandlerForPairProgramming);
+        } else {
+            /* the peer made the edits without knowing ours: rebase them on ours, with the ones still buffered */
+            editCoalescer.flush();
+            for (LiveEdit readyEdit : readyEdits) {
+                LiveEdit rebasedEdit = offlineEdits.rebase(readyEdit);
+                if (rebasedEdit != null) {
+                    remoteEditApplier.enqueue(liveDocument, rebasedEdit);
+                }
+            }
+            persistOfflineEdits(liveDocument);
+            /* the edits typed from now on are made on top of these ones */
+            remoteEditApplier.flush();
+        }
+    }
+
+    /** Applies a frame's worth of remote edits: the local cursor is saved and restored and each remote cursor moved only once. */
+    private void applyRemoteEdits(LiveDocument liveDocument, List<LiveEdit> edits) {
+        Document document = liveDocument.getDocument();
+        /* local edits still buffered were typed before these ones were received: send them first */
+        editCoalescer.flush();
+
+        if (liveDocument.getTextEditor() == null){
+            for (LiveEdit edit : edits) {
+                editingNotifier.editReceived(liveDocument.getLocation().toString(), edit.getPeer());
+            }
+            liveDocument.clearExpectedChecksum();
+            return;
+        }
+        double startTime = LiveEditMetrics.now();
+        Map<String, Integer> remoteCursorOffsets = new LinkedHashMap<String, Integer>();
+        beginModelUpdate();
+        TextPosition cursorPosition = document.getCursorPosition();
+        for (LiveEdit edit : edits) {
+            liveDocument.remoteEditApplying(edit);
+            document.replace(edit.getOffset(), edit.getRemovedCharCount(), edit.getAddedCharacters());
+            /* the remote cursor sits right after the characters the peer added */
+            remoteCursorOffsets.put(edit.getPeer(), edit.getOffset() + edit.getAddedCharacters().length());
+            if (edit.isTimed()) {
+                echoAppliedEdit(liveDocument, edit);
+            }
+        }
+        document.setCursorPosition(cursorPosition);
+        endModelUpdate();
+        for (Map.Entry<String, Integer> remoteCursorOffset : remoteCursorOffsets.entrySet()) {
+            moveRemoteCursor(liveDocument, remoteCursorOffset.getKey(), remoteCursorOffset.getValue());
+        }
+        if (!liveDocument.getOfflineEdits().isEmpty()) {
+            /* the peers cannot have our checksum until our offline edits are sent */
+            liveDocument.clearExpectedChecksum();
+        } else if (liveDocument.getExpectedChecksumPeer() != null && !remoteEditApplier.hasQueuedEdits(liveDocument)) {
+            /* a large paste is applied over several frames: the checksum covers the text once all of it is applied */
+            verifyChecksum(liveDocument);
+        }
+        metrics.recordRemoteApply(LiveEditMetrics.now() - startTime);
+    }
+
+    /** Tells the author of a stamped edit it has been applied here, so that it can measure the latency of its edits. */
+    private void echoAppliedEdit(LiveDocument liveDocument, LiveEdit edit) {
+        double applyDelay = LiveEditMetrics.now() - edit.getReceivedTime();
+        metrics.recordApplyDelay(applyDelay);
+        if (!serverExtended) {
+            /* the author cannot measure its round trips through a server that drops the echo */
+            return;
+        }
+        outboundQueue.sendLatest("applied:" + edit.getPeer(),
+                                 new FluxMessageBuilder().withUserName(getChannel(liveDocument)).withChannelName(userId) //
+                                                         .buildLiveEditAppliedMessage(edit.getPeer(), edit.getOriginTime(), applyDelay));
+    }
+
+    private void moveRemoteCursor(LiveDocument liveDocument, String peer, int offset) {
+        CursorHandlerForPairProgramming remoteCursor = liveDocument.getRemoteCursor(peer);
+        if (remoteCursor == null) {
+            remoteCursor = new CursorHandlerForPairProgramming();
+            remoteCursor.setUser(peer);
+            liveDocument.putRemoteCursor(peer, remoteCursor);
+        }
+        /* the style may have changed if the peer was evicted in between */
+        remoteCursor.setUserId(peerRegistry.touch(peer));
+        remoteCursorRenderer.moveCursor(liveDocument, remoteCursor, offset);
+    }
+
+    private void requestMissingEdits(final LiveDocument liveDocument, final String peer) {
+        if (socket == null || !liveDocument.markResyncRequested(peer)) {
+            return;
+        }
+        if (!serverExtended) {
+            /* the server would not relay the request */
+            reloadDocument(liveDocument, peer);
+            return;
+        }
+        Message request = new FluxMessageBuilder().with(liveDocument).withUserName(getChannel(liveDocument)).withChannelName(userId) //
+                                                   .withSequence(liveDocument.getAppliedSequence(peer)) //
+                                                   .buildLiveResourceOperationsRequestMessage(peer);
+        messageStreamer.send(request);
+        new Timer() {
+            @Override
+            public void run() {
+                if (liveDocuments.contains(liveDocument) && liveDocument.hasGap(peer)) {
+                    reloadDocument(liveDocument, peer);
+                }
+            }
+        }.schedule(configuration.getResyncTimeout());
+    }
+
+    /**
+     * Last resort when a peer cannot replay the edits we missed: the edits held back are applied without them, then
+     * the whole resource is reloaded from that peer.
+     */
+    private void reloadDocument(LiveDocument liveDocument, String peer) {
+        if (!liveDocument.getOfflineEdits().isEmpty()) {
+            /* reloading would lose our offline edits: the peer gets our content instead once they are sent */
+            liveDocument.getOfflineEdits().addConflict(peer);
+            liveDocument.resyncCompleted(peer);
+            return;
+        }
+        Log.info(getClass(), "edits from " + peer + " to " + liveDocument.getDocument().getFile().getLocation() + " are missing");
+        enqueueRemoteEdits(liveDocument, liveDocument.skipGap(peer));
+        requestSnapshot(liveDocument, peer);
+    }
+
+    /** Compares our checksum with the one a peer computed after the edits we just applied, when both documents are at the same version. */
+    private void verifyChecksum(LiveDocument liveDocument) {
+        String peer = liveDocument.getExpectedChecksumPeer();
+        Map<String, Integer> versions = liveDocument.getExpectedChecksumVersions();
+        int checksum = liveDocument.getExpectedChecksum();
+        liveDocument.clearExpectedChecksum();
+        if (!liveDocument.getVersions(userId).equals(versions) || liveDocument.getChecksum() == checksum) {
+            return;
+        }
+        Log.info(getClass(), liveDocument.getDocument().getFile().getLocation() + " has diverged from " + peer);
+        /* the peer with the smallest id is the reference, so that both sides do not swap their contents */
+        if (userId.compareTo(peer) < 0) {
+            sendSnapshot(liveDocument, peer);
+        } else {
+            requestSnapshot(liveDocument, peer);
         }
     }
 
+    /** Asks a peer for the whole resource, through the events of the Flux protocol when the server only relays those. */
+    private void requestSnapshot(LiveDocument liveDocument, String peer) {
+        FluxMessageBuilder builder = new FluxMessageBuilder().with(liveDocument).withUserName(getChannel(liveDocument)).withChannelName(userId);
+        messageStreamer.send(serverExtended ? builder.buildLiveResourceRequestMessage(peer) : builder.buildLiveResourceStartedMessage(peer));
+    }
+
+    private void sendSnapshot(LiveDocument liveDocument, String peer) {
+        if (!liveDocument.getOfflineEdits().isEmpty()) {
+            /* sent after the offline edits, which the snapshot's version must count */
+            liveDocument.getOfflineEdits().addConflict(peer);
+            return;
+        }
+        /* the checksum only covers sent edits and the version counts the received ones as applied */
+        editCoalescer.flush();
+        remoteEditApplier.flush();
+        FluxMessageBuilder builder = new FluxMessageBuilder().with(liveDocument).withUserName(getChannel(liveDocument)).withChannelName(userId) //
+                                                             .withChecksum(liveDocument.getChecksum(), liveDocument.getVersions(userId)) //
+                                                             .withCompressionThreshold(canSendCompact() ? configuration.getCompressionThreshold() : 0);
+        String content = liveDocument.getDocument().getContents();
+        if (!serverExtended) {
+            /* in one message: the chunks would not be relayed */
+            messageStreamer.send(builder.buildLiveResourceStartedResponseMessage(peer, content));
+            return;
+        }
+        messageStreamer.stream(builder.buildLiveResourceSnapshotMessages(peer, content, getChunkSize()));
+    }
+
+    private int getChunkSize() {
+        return configuration.getChunkSize() > 0 ? configuration.getChunkSize() : Integer.MAX_VALUE;
+    }
+
+    private void applySnapshot(LiveDocument liveDocument, String content, Map<String, Integer> versions) {
+        editCoalescer.flush();
+        remoteEditApplier.discard(liveDocument);
+        Document document = liveDocument.getDocument();
+        beginModelUpdate();
+        int cursorOffset = liveDocument.getLineIndex().getOffset(document.getCursorPosition());
+        document.replace(0, document.getContents().length(), content);
+        document.setCursorPosition(liveDocument.getLineIndex().getPosition(Math.min(cursorOffset, content.length())));
+        endModelUpdate();
+        liveDocument.snapshotApplied(userId, content, versions);
+    }
+
     public static native SocketIOOverlay getSocketIO()/*-{
                                                       return $wnd.io;
                                                       }-*/;
@@ -353,14 +1157,8 @@ public class CheFluxLiveEditExtension{
 
                                      for (final MachineProcessDto machineProcessDto : descriptors) {
                                          if (machineProcessDto.getPid() == processId) {
-                                             new Timer() {
-                                                 @Override
-                                                 public void run() {
-                                                     if (connectIfFluxMicroservice(machineProcessDto)) {
-                                                         // break;
-                                                     }
-                                                 }
-                                             }.schedule(8000);
+                                             /* no need to wait for the server: the connection is retried until it is up */
+                                             connectIfFluxMicroservice(machineProcessDto);
                                              return;
                                          }
                                      }
@@ -388,51 +1186,136 @@ public class CheFluxLiveEditExtension{
         }
     }
 
-    private void initCursorHandler(){
-        if (socket!=null){
-            cursorModelForPairProgramming = new CursorModelForPairProgramming(documentMain, socket, editorAgent, channelName, userId);
-            return;
-        }
-        Timer t = new Timer() {
+    private void trackFileOperations() {
+        eventBus.addHandler(FileEvent.TYPE, new FileEvent.FileEventHandler() {
             @Override
-            public void run() {
-                initCursorHandler();
+            public void onFileOperation(FileEvent event) {
+                if (event.getOperationType() == FileEvent.FileOperation.SAVE) {
+                    return;
+                }
+                LiveDocument liveDocument = liveDocuments.get(event.getFile().getLocation().toString());
+                if (liveDocument == null) {
+                    return;
+                }
+                if (event.getOperationType() == FileEvent.FileOperation.CLOSE) {
+                    closeLiveDocument(liveDocument);
+                } else {
+                    liveDocument.invalidateEditor();
+                    remoteCursorRenderer.invalidate(liveDocument);
+                }
             }
-        };
-        t.schedule(1000);
+        });
+    }
+
+    /** Releases everything held for a document once its editor is closed, and tells the peers. */
+    private void closeLiveDocument(LiveDocument liveDocument) {
+        /* the pending edits still have to reach the peers */
+        editCoalescer.flush();
+        liveDocuments.remove(liveDocument);
+        List<LiveEdit> pendingEdits = remoteEditApplier.discard(liveDocument);
+        remoteCursorRenderer.forget(liveDocument);
+        cursorPublisher.forget(liveDocument.getDocument());
+        compactProtocol.forget(liveDocument.getProject(), liveDocument.getResource());
+        liveDocument.release();
+        if (serverExtended) {
+            /* otherwise the peers release our cursor once we are idle */
+            messageStreamer.send(new FluxMessageBuilder().with(liveDocument).withUserName(getChannel(liveDocument)).withChannelName(userId) //
+                                                         .buildLiveResourceClosedMessage());
+        }
+        if (shadowBuffers.isEnabled() && !liveDocument.hasGaps() && liveDocument.getOfflineEdits().isEmpty()) {
+            /* still subscribed: the peers' edits keep it up to date until it is opened again */
+            shadowBuffers.put(new ShadowBuffer(liveDocument, userId, pendingEdits));
+        } else {
+            unsubscribe(liveDocument);
+        }
+        metrics.recordLiveDocuments(liveDocuments.size(), liveDocuments.getHandlerCount());
+    }
+
+    /** Applies a peer's edit to the shadow buffer of a closed document, if it is still kept. */
+    private void receiveShadowEdit(String project, String resource, LiveEdit edit) {
+        ShadowBuffer shadowBuffer = shadowBuffers.get(project, resource);
+        if (shadowBuffer == null) {
+            return;
+        }
+        peerRegistry.touch(edit.getPeer());
+        shadowBuffers.apply(shadowBuffer, edit);
+        editingNotifier.editReceived(shadowBuffer.getLocation(), edit.getPeer());
+    }
+
+    /**
+     * Brings a document being opened up to date with the shadow buffer kept since it was closed. Returns false if
+     * there is none.
+     */
+    private boolean restoreShadowBuffer(LiveDocument liveDocument) {
+        ShadowBuffer shadowBuffer = shadowBuffers.get(liveDocument.getProject(), liveDocument.getResource());
+        if (shadowBuffer == null) {
+            return false;
+        }
+        shadowBuffers.remove(shadowBuffer);
+        /* the document subscribed again on its own */
+        unsubscribe(getChannel(shadowBuffer.getProject(), shadowBuffer.getResource()));
+        String content = shadowBuffer.getText();
+        if (content.equals(liveDocument.getDocument().getContents())) {
+            liveDocument.snapshotApplied(userId, content, shadowBuffer.getVersions());
+            return true;
+        }
+        TextEditorPresenter textEditor = liveDocument.getTextEditor();
+        boolean dirty = textEditor != null && textEditor.isDirty();
+        applySnapshot(liveDocument, content, shadowBuffer.getVersions());
+        if (textEditor != null && !dirty) {
+            /* the peers' edits are not the user's changes to save */
+            textEditor.updateDirtyState(false);
+        }
+        return true;
     }
 
     private void sendFluxMessageOnDocumentModelChanged() {
 
-        cursorHandlerForPairProgramming = new CursorHandlerForPairProgramming();
         eventBus.addHandler(DocumentReadyEvent.TYPE, new DocumentReadyHandler() {
             @Override
             public void onDocumentReady(DocumentReadyEvent event) {
-                userId = "user" + Math.random();
-                liveDocuments.put(event.getDocument().getFile().getLocation().toString(), event.getDocument());
-                documentMain = event.getDocument();
-                final DocumentHandle documentHandle = documentMain.getDocumentHandle();
-                initCursorHandler();
-                /*here withUserName method sets the channel name*/
-                Message message = new FluxMessageBuilder().with(documentMain).withChannelName(userId).withUserName(channelName) //
-                                                          .buildResourceRequestMessage();
-                socket.emit(message);
-                documentHandle.getDocEventBus().addHandler(DocumentChangeEvent.TYPE, new DocumentChangeHandler() {
+                Document document = event.getDocument();
+                LiveDocument previous = liveDocuments.get(document.getFile().getLocation().toString());
+                if (previous != null) {
+                    /* opened again without having been closed */
+                    closeLiveDocument(previous);
+                }
+                LiveDocument liveDocument = new LiveDocument(document, editorAgent, configuration.getEditHistorySize());
+                liveDocuments.put(liveDocument);
+                subscribe(liveDocument);
+                /* the cursor moves are only sent once connected */
+                liveDocument.setCursorModel(new CursorModelForPairProgramming(document, liveDocument.getLineIndex(), cursorPublisher,
+                                                                              editCoalescer));
+                final DocumentHandle documentHandle = document.getDocumentHandle();
+                final LineIndex lineIndex = liveDocument.getLineIndex();
+                liveDocument.addHandlerRegistration(documentHandle.getDocEventBus().addHandler(DocumentChangeEvent.TYPE, new DocumentChangeHandler() {
                     @Override
                     public void onDocumentChange(DocumentChangeEvent event) {
+                        /* every change, the remote edits and snapshots applied included */
+                        lineIndex.replace(event.getOffset(), event.getRemoveCharCount(), event.getText() == null ? "" : event.getText());
                         if (socket != null) {
-                            /*here withUserName method sets the channel name and the withchannelName sets the username*/
-                            Message liveResourceChangeMessage = new FluxMessageBuilder().with(event).withUserName(channelName).withChannelName(userId)//
-                                                                                        .buildLiveResourceChangeMessage();
                             isDocumentChanged = true;
                             if (isUpdatingModel) {
                                 return;
                             }
-                            socket.emit(liveResourceChangeMessage);
-
+                            remoteEditApplier.localEditApplied(event.getDocument().getDocument(), event.getOffset(), event.getRemoveCharCount(),
+                                                               event.getText() == null ? 0 : event.getText().length());
+                            isAddingLocalChange = true;
+                            editCoalescer.add(event.getDocument().getDocument(), event.getOffset(), event.getRemoveCharCount(), event.getText());
+                            isAddingLocalChange = false;
                         }
                     }
-                });
+                }));
+                /* once the line index follows the changes */
+                if (!restoreShadowBuffer(liveDocument)) {
+                    /* a restored shadow buffer is current: the resource's content would only race with it */
+                    /*here withUserName method sets the channel name*/
+                    Message message = new FluxMessageBuilder().with(document).withChannelName(userId).withUserName(channelName) //
+                                                              .buildResourceRequestMessage();
+                    messageStreamer.send(message);
+                }
+                restoreOfflineEdits(liveDocument);
+                metrics.recordLiveDocuments(liveDocuments.size(), liveDocuments.getHandlerCount());
             }
         });
     }
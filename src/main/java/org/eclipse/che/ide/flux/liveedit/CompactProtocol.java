@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * State of the compact wire protocol.
+ * <p>
+ * Every peer announces itself with a liveEditHello carrying a short numeric id, and announces each resource it edits
+ * with a liveEditResource message binding a short numeric id to the project and resource names. Edits and cursor moves
+ * are then sent as positional arrays referencing those ids instead of objects repeating project, resource and peer
+ * names, only the channel they are routed by being kept. Compact messages are only sent once the Flux server has answered the hello with a liveEditWelcome (older
+ * servers do not know how to route them) and as long as every peer heard from has said hello (older clients cannot
+ * decode them); otherwise the verbose messages are used.
+ */
+public class CompactProtocol {
+    private final Map<String, Integer>                 localResources     = new HashMap<String, Integer>();
+    private final Set<String>                          announcedResources = new HashSet<String>();
+    private final Map<Integer, String>                 remotePeers        = new HashMap<Integer, String>();
+    private final Set<Integer>                         askedPeers         = new HashSet<Integer>();
+    private final Set<String>                          compactPeers       = new HashSet<String>();
+    private final Set<String>                          verbosePeers       = new HashSet<String>();
+    private final Map<Integer, Map<Integer, String[]>> remoteResources    = new HashMap<Integer, Map<Integer, String[]>>();
+    private int                                        localPeer          = newPeerId();
+    private int                                        lastResourceId;
+    private boolean                                    welcomed;
+
+    public int getLocalPeer() {
+        return localPeer;
+    }
+
+    public boolean canSend() {
+        return welcomed && verbosePeers.isEmpty();
+    }
+
+    public void serverWelcomed() {
+        welcomed = true;
+    }
+
+    /** The server forgot about us, e.g. after a reconnection: everything has to be announced again. */
+    public void connectionReset() {
+        welcomed = false;
+        announcedResources.clear();
+        askedPeers.clear();
+    }
+
+    /**
+     * Registers the hello of a peer. Returns true if the peer was not known yet.
+     * When another peer took our short id, the one with the greatest full id picks a new one.
+     * A hello that is not a reply comes from a peer that joined, reconnected or missed our announcements: our
+     * resources are announced again, even if the peer was already known.
+     */
+    public boolean helloReceived(int peer, String fullId, String localFullId, boolean reply) {
+        if (peer == localPeer && localFullId.compareTo(fullId) > 0) {
+            localPeer = newPeerId();
+            announcedResources.clear();
+        }
+        verbosePeers.remove(fullId);
+        askedPeers.remove(peer);
+        boolean isNew = compactPeers.add(fullId);
+        remotePeers.put(peer, fullId);
+        if (isNew || !reply) {
+            announcedResources.clear();
+        }
+        return isNew;
+    }
+
+    /**
+     * A compact message of the peer could not be decoded. Returns true if its announcements have to be asked for
+     * with a hello, false if they were already asked for and are still awaited.
+     */
+    public boolean announcementsMissed(int peer) {
+        return askedPeers.add(peer);
+    }
+
+    /** A peer that did not say hello sent a verbose message: it cannot decode compact messages. */
+    public void verboseMessageReceived(String fullId) {
+        if (fullId != null && !compactPeers.contains(fullId)) {
+            verbosePeers.add(fullId);
+        }
+    }
+
+    /** Forgets everything about a peer that left. */
+    public void peerLeft(String fullId) {
+        compactPeers.remove(fullId);
+        verbosePeers.remove(fullId);
+        Iterator<Map.Entry<Integer, String>> peers = remotePeers.entrySet().iterator();
+        while (peers.hasNext()) {
+            Map.Entry<Integer, String> peer = peers.next();
+            if (peer.getValue().equals(fullId)) {
+                remoteResources.remove(peer.getKey());
+                askedPeers.remove(peer.getKey());
+                peers.remove();
+            }
+        }
+    }
+
+    public String getPeer(int peer) {
+        return remotePeers.get(peer);
+    }
+
+    public int getResourceId(String project, String resource) {
+        String key = project + "/" + resource;
+        Integer resourceId = localResources.get(key);
+        if (resourceId == null) {
+            resourceId = ++lastResourceId;
+            localResources.put(key, resourceId);
+        }
+        return resourceId;
+    }
+
+    /** Forgets the id of a closed resource: it gets a new one if opened again. */
+    public void forget(String project, String resource) {
+        String key = project + "/" + resource;
+        localResources.remove(key);
+        announcedResources.remove(key);
+    }
+
+    /** Returns true if the resource has to be announced before being referenced by a compact message. */
+    public boolean markAnnounced(String project, String resource) {
+        return announcedResources.add(project + "/" + resource);
+    }
+
+    public void resourceDefined(int peer, int resourceId, String project, String resource) {
+        askedPeers.remove(peer);
+        Map<Integer, String[]> resources = remoteResources.get(peer);
+        if (resources == null) {
+            resources = new HashMap<Integer, String[]>();
+            remoteResources.put(peer, resources);
+        }
+        resources.put(resourceId, new String[]{project, resource});
+    }
+
+    /** The project and resource names a peer bound to the id, null if we missed the announcement. */
+    public String[] getResource(int peer, int resourceId) {
+        Map<Integer, String[]> resources = remoteResources.get(peer);
+        return resources == null ? null : resources.get(resourceId);
+    }
+
+    private static int newPeerId() {
+        return 1 + (int)(Math.random() * 0x3fffffff);
+    }
+}
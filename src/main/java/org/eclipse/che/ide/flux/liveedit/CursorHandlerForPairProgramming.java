@@ -7,6 +7,9 @@ public class CursorHandlerForPairProgramming {
     String user;
     int userId;
     HasTextMarkers.MarkerRegistration markerRegistration;
+    int desiredOffset = -1;
+    int renderedOffset = -1;
+    String renderedStyle;
 
     protected void setMarkerRegistration(HasTextMarkers.MarkerRegistration markerRegistration){
         this.markerRegistration = markerRegistration;
@@ -35,4 +38,31 @@ public class CursorHandlerForPairProgramming {
     protected void clearMark(){
         this.markerRegistration.clearMark();
     }
+
+    /** Offset the peer's cursor should be displayed at, -1 if unknown. */
+    protected void setDesiredOffset(int desiredOffset){
+        this.desiredOffset = desiredOffset;
+    }
+
+    protected int getDesiredOffset(){
+        return this.desiredOffset;
+    }
+
+    /** Offset the marker is currently displayed at, -1 if it is not displayed. */
+    protected void setRenderedOffset(int renderedOffset){
+        this.renderedOffset = renderedOffset;
+    }
+
+    protected int getRenderedOffset(){
+        return this.renderedOffset;
+    }
+
+    /** Style the marker is currently displayed with, the peer's style changing if it was evicted in between. */
+    protected void setRenderedStyle(String renderedStyle){
+        this.renderedStyle = renderedStyle;
+    }
+
+    protected String getRenderedStyle(){
+        return this.renderedStyle;
+    }
 }
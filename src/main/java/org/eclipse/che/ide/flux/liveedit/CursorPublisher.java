@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.che.ide.api.editor.document.Document;
+
+import com.google.gwt.core.client.Duration;
+import com.google.gwt.user.client.Timer;
+
+/**
+ * Rate limited, latest-wins broadcast of the local cursor offset.
+ * <p>
+ * Only the last offset of each document is kept. At most
+ * {@link LiveEditConfiguration#getCursorUpdatesPerSecond()} sends happen per second and a trailing send
+ * makes sure the final position always reaches the peers. Offsets the peers already know are not sent again.
+ * An offset the handler could not send is kept until the next flush, unless a newer one replaces it.
+ */
+public class CursorPublisher {
+
+    public interface SendHandler {
+        /** Returns false if the offset could not be sent yet, e.g. while disconnected. */
+        boolean onSend(Document document, int offset);
+    }
+
+    private final LiveEditConfiguration  configuration;
+    private final SendHandler            sendHandler;
+    private final Map<Document, Integer> pendingOffsets = new LinkedHashMap<Document, Integer>();
+    private final Map<Document, Integer> sentOffsets    = new HashMap<Document, Integer>();
+    private final Timer                  trailingTimer  = new Timer() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    private double  lastSendTime;
+    private boolean suspended;
+
+    public CursorPublisher(LiveEditConfiguration configuration, SendHandler sendHandler) {
+        this.configuration = configuration;
+        this.sendHandler = sendHandler;
+    }
+
+    public void publish(Document document, int offset) {
+        if (suspended) {
+            return;
+        }
+        pendingOffsets.put(document, offset);
+        double elapsed = Duration.currentTimeMillis() - lastSendTime;
+        int interval = getSendInterval();
+        if (elapsed >= interval) {
+            flush();
+        } else if (!trailingTimer.isRunning()) {
+            trailingTimer.schedule((int)Math.ceil(interval - elapsed));
+        }
+    }
+
+    public void flush() {
+        trailingTimer.cancel();
+        if (pendingOffsets.isEmpty()) {
+            return;
+        }
+        lastSendTime = Duration.currentTimeMillis();
+        Iterator<Map.Entry<Document, Integer>> pendingOffsetIterator = pendingOffsets.entrySet().iterator();
+        while (pendingOffsetIterator.hasNext()) {
+            Map.Entry<Document, Integer> pending = pendingOffsetIterator.next();
+            if (!pending.getValue().equals(sentOffsets.get(pending.getKey()))) {
+                if (!sendHandler.onSend(pending.getKey(), pending.getValue())) {
+                    continue;
+                }
+                sentOffsets.put(pending.getKey(), pending.getValue());
+            }
+            pendingOffsetIterator.remove();
+        }
+    }
+
+    /** Ignores the cursor moves until {@link #resume()}, while the plugin itself moves the cursor applying remote changes. */
+    public void suspend() {
+        suspended = true;
+    }
+
+    public void resume() {
+        suspended = false;
+    }
+
+    /**
+     * Records an offset the peers learned by other means, typically the end of an edit we just sent,
+     * so that it is not broadcast again.
+     */
+    public void markSent(Document document, int offset) {
+        sentOffsets.put(document, offset);
+    }
+
+    public void forget(Document document) {
+        pendingOffsets.remove(document);
+        sentOffsets.remove(document);
+    }
+
+    private int getSendInterval() {
+        int updatesPerSecond = configuration.getCursorUpdatesPerSecond();
+        return updatesPerSecond <= 0 ? 0 : 1000 / updatesPerSecond;
+    }
+}
@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit;
+
+/**
+ * Rolling checksum of a live document, kept up to date edit by edit.
+ * <p>
+ * The value is the sum of the hashes of every pair of adjacent characters (the text being framed by start and
+ * end markers), so that a replacement only changes the pairs around and inside the replaced range: updating
+ * costs O(edit size) whatever the size of the document. The text is not copied: the characters around the edit
+ * are read from the text being edited, the document or the buffer holding it.
+ */
+public class DocumentChecksum {
+    private static final int START = -1;
+    private static final int END   = -2;
+
+    /** The text the checksum is computed on. */
+    public interface Text {
+        int length();
+
+        String getText(int start, int end);
+    }
+
+    private int value;
+
+    public void reset(String text) {
+        value = 0;
+        int previous = START;
+        for (int i = 0; i < text.length(); i++) {
+            value += pairHash(previous, text.charAt(i));
+            previous = text.charAt(i);
+        }
+        value += pairHash(previous, END);
+    }
+
+    /** To be called before the replacement is made to the text. */
+    public void replace(Text text, int offset, int removedCharCount, String addedCharacters) {
+        int start = Math.max(0, Math.min(offset, text.length()));
+        int end = Math.min(start + removedCharCount, text.length());
+        int excerptStart = Math.max(0, start - 1);
+        String excerpt = text.getText(excerptStart, Math.min(end + 1, text.length()));
+        int before = start > 0 ? excerpt.charAt(0) : START;
+        int after = end < text.length() ? excerpt.charAt(end - excerptStart) : END;
+        update(before, excerpt.substring(start - excerptStart, end - excerptStart), addedCharacters, after);
+    }
+
+    /** To be called once characters have been inserted, nothing being removed, with the text as it is now. */
+    public void inserted(Text text, int offset, int addedCharCount) {
+        int excerptStart = Math.max(0, offset - 1);
+        int end = offset + addedCharCount;
+        String excerpt = text.getText(excerptStart, Math.min(end + 1, text.length()));
+        int before = offset > 0 ? excerpt.charAt(0) : START;
+        int after = end < text.length() ? excerpt.charAt(end - excerptStart) : END;
+        update(before, "", excerpt.substring(offset - excerptStart, end - excerptStart), after);
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    private void update(int before, String removedCharacters, String addedCharacters, int after) {
+        int previous = before;
+        for (int i = 0; i < removedCharacters.length(); i++) {
+            value -= pairHash(previous, removedCharacters.charAt(i));
+            previous = removedCharacters.charAt(i);
+        }
+        value -= pairHash(previous, after);
+
+        previous = before;
+        for (int i = 0; i < addedCharacters.length(); i++) {
+            value += pairHash(previous, addedCharacters.charAt(i));
+            previous = addedCharacters.charAt(i);
+        }
+        value += pairHash(previous, after);
+    }
+
+    private static int pairHash(int previous, int current) {
+        int hash = previous * 0x01000193 ^ current;
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+}
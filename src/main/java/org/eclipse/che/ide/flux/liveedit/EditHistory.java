@@ -0,0 +1,51 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Bounded log of the last local edits of a document, used to answer peers that missed some of them.
+ */
+public class EditHistory {
+    private final LinkedList<LiveEdit> edits = new LinkedList<LiveEdit>();
+    private final int                  capacity;
+
+    public EditHistory(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public void add(LiveEdit edit) {
+        edits.addLast(edit);
+        while (edits.size() > capacity) {
+            edits.removeFirst();
+        }
+    }
+
+    /**
+     * Returns the edits following the given sequence number, or null when the oldest of them
+     * has already been dropped from the history.
+     */
+    public List<LiveEdit> since(int sequence) {
+        List<LiveEdit> result = new ArrayList<LiveEdit>();
+        for (LiveEdit edit : edits) {
+            if (edit.getSequence() > sequence) {
+                result.add(edit);
+            }
+        }
+        if (!result.isEmpty() && result.get(0).getSequence() != sequence + 1) {
+            return null;
+        }
+        return result;
+    }
+}
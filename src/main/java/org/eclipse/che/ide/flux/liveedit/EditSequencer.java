@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Numbering of the edits of a resource, see {@link LiveDocument}: the local edits are numbered in the order they
+ * are sent, the edits of every peer are applied in the order they were numbered, the ones following a gap being
+ * held back until the missing ones have been fetched or given up.
+ */
+public class EditSequencer {
+    private final EditHistory                             localEdits;
+    private final Map<String, Integer>                    appliedSequences = new HashMap<String, Integer>();
+    private final Map<String, TreeMap<Integer, LiveEdit>> heldBackEdits    = new HashMap<String, TreeMap<Integer, LiveEdit>>();
+    private final Set<String>                             resyncRequested  = new HashSet<String>();
+    private int                                           localSequence;
+
+    public EditSequencer(int historySize) {
+        this.localEdits = new EditHistory(historySize);
+    }
+
+    public LiveEdit recordLocalEdit(String peer, int offset, int removedCharCount, String addedCharacters) {
+        LiveEdit edit = new LiveEdit(peer, ++localSequence, offset, removedCharCount, addedCharacters);
+        localEdits.add(edit);
+        return edit;
+    }
+
+    /** Local edits following the given sequence number, null if some of them are no longer in the history. */
+    public List<LiveEdit> getLocalEditsSince(int sequence) {
+        return localEdits.since(sequence);
+    }
+
+    /**
+     * The version of the document as seen by this peer: the last sequence number applied from every peer,
+     * including this one under its own id.
+     */
+    public Map<String, Integer> getVersions(String localPeer) {
+        Map<String, Integer> versions = new HashMap<String, Integer>(appliedSequences);
+        if (localSequence > 0) {
+            versions.put(localPeer, localSequence);
+        }
+        return versions;
+    }
+
+    /** Starts again from the version of a snapshot, the edits held back being dropped. */
+    public void reset(String localPeer, Map<String, Integer> versions) {
+        appliedSequences.clear();
+        heldBackEdits.clear();
+        resyncRequested.clear();
+        for (Map.Entry<String, Integer> version : versions.entrySet()) {
+            if (!version.getKey().equals(localPeer)) {
+                appliedSequences.put(version.getKey(), version.getValue());
+            }
+        }
+    }
+
+    /**
+     * Registers an edit received from a peer and returns the edits that can now be applied, in order.
+     * The first edit seen from a peer sets its baseline, duplicates are ignored and edits following a gap are held back.
+     */
+    public List<LiveEdit> receive(LiveEdit edit) {
+        List<LiveEdit> ready = new ArrayList<LiveEdit>();
+        if (edit.getSequence() <= 0) {
+            ready.add(edit);
+            return ready;
+        }
+        String peer = edit.getPeer();
+        if (edit.getSequence() == 1 && appliedSequences.containsKey(peer)) {
+            /* the peer numbers its edits from scratch again, e.g. it opened the document again */
+            resetPeer(peer);
+        }
+        Integer applied = appliedSequences.get(peer);
+        int lastApplied = applied == null ? edit.getSequence() - 1 : applied;
+        if (edit.getSequence() <= lastApplied) {
+            return ready;
+        }
+        TreeMap<Integer, LiveEdit> heldBack = heldBackEdits.get(peer);
+        if (edit.getSequence() > lastApplied + 1) {
+            if (heldBack == null) {
+                heldBack = new TreeMap<Integer, LiveEdit>();
+                heldBackEdits.put(peer, heldBack);
+            }
+            heldBack.put(edit.getSequence(), edit);
+            appliedSequences.put(peer, lastApplied);
+            return ready;
+        }
+        ready.add(edit);
+        lastApplied++;
+        while (heldBack != null && !heldBack.isEmpty() && heldBack.firstKey() <= lastApplied + 1) {
+            LiveEdit next = heldBack.remove(heldBack.firstKey());
+            if (next.getSequence() == lastApplied + 1) {
+                ready.add(next);
+                lastApplied++;
+            }
+        }
+        if (heldBack == null || heldBack.isEmpty()) {
+            heldBackEdits.remove(peer);
+            resyncRequested.remove(peer);
+        }
+        appliedSequences.put(peer, lastApplied);
+        return ready;
+    }
+
+    /**
+     * Gives up on the missing edits of the peer: returns the edits held back after them, in order, to be applied
+     * without them, the next edits being expected after the last of these.
+     */
+    public List<LiveEdit> skipGap(String peer) {
+        List<LiveEdit> ready = new ArrayList<LiveEdit>();
+        TreeMap<Integer, LiveEdit> heldBack = heldBackEdits.remove(peer);
+        resyncRequested.remove(peer);
+        if (heldBack != null && !heldBack.isEmpty()) {
+            ready.addAll(heldBack.values());
+            appliedSequences.put(peer, heldBack.lastKey());
+        }
+        return ready;
+    }
+
+    public boolean hasGap(String peer) {
+        return heldBackEdits.containsKey(peer);
+    }
+
+    /** Whether edits of some peer are held back, waiting for missing ones. */
+    public boolean hasGaps() {
+        return !heldBackEdits.isEmpty();
+    }
+
+    /** Last sequence number applied from the peer, 0 if none. */
+    public int getAppliedSequence(String peer) {
+        Integer applied = appliedSequences.get(peer);
+        return applied == null ? 0 : applied;
+    }
+
+    public Set<String> getPeers() {
+        return new HashSet<String>(appliedSequences.keySet());
+    }
+
+    /** Returns true if no resync of the peer's edits is already in progress. */
+    public boolean markResyncRequested(String peer) {
+        return resyncRequested.add(peer);
+    }
+
+    /** Called once the peer answered a resync request, whether or not it filled the gap. */
+    public void resyncCompleted(String peer) {
+        resyncRequested.remove(peer);
+    }
+
+    /** Whether some peers have not answered a resync request yet. */
+    public boolean isResyncPending() {
+        return !resyncRequested.isEmpty();
+    }
+
+    /** Forgets what was applied from the peer, after the document has been reloaded as a whole. */
+    public void resetPeer(String peer) {
+        appliedSequences.remove(peer);
+        heldBackEdits.remove(peer);
+        resyncRequested.remove(peer);
+    }
+
+    /** Drops the edits held back and the resyncs in progress, once the document has been closed. */
+    public void release() {
+        heldBackEdits.clear();
+        resyncRequested.clear();
+    }
+}
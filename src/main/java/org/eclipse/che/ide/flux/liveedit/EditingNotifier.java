@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.che.ide.api.notification.NotificationManager;
+import org.eclipse.che.ide.api.notification.StatusNotification;
+
+import com.google.gwt.core.client.Duration;
+import com.google.gwt.i18n.client.DateTimeFormat;
+import com.google.gwt.user.client.Timer;
+
+import static org.eclipse.che.ide.api.notification.ReadState.READ;
+import static org.eclipse.che.ide.api.notification.StatusNotification.DisplayMode.FLOAT_MODE;
+import static org.eclipse.che.ide.api.notification.StatusNotification.Status.SUCCESS;
+
+/**
+ * Tells that peers are editing documents not opened here: one notification per document and peer, showing how
+ * many edits were received and when the last one was. The notifications are refreshed at most once per
+ * {@link LiveEditConfiguration#getEditingNotificationRefresh()} and removed after
+ * {@link LiveEditConfiguration#getEditingNotificationTimeout()} without edits.
+ */
+public class EditingNotifier {
+
+    private static final DateTimeFormat TIME_FORMAT = DateTimeFormat.getFormat(DateTimeFormat.PredefinedFormat.TIME_MEDIUM);
+
+    private final LiveEditConfiguration    configuration;
+    private final NotificationManager      notificationManager;
+    private final Map<String, EditingPeer> editingPeers = new LinkedHashMap<String, EditingPeer>();
+    private final Timer                    refreshTimer = new Timer() {
+        @Override
+        public void run() {
+            refresh();
+        }
+    };
+
+    public EditingNotifier(LiveEditConfiguration configuration, NotificationManager notificationManager) {
+        this.configuration = configuration;
+        this.notificationManager = notificationManager;
+    }
+
+    /** Records an edit the peer made to a document not opened here, the first one being notified right away. */
+    public void editReceived(String location, String peer) {
+        String key = location + "\n" + peer;
+        EditingPeer editingPeer = editingPeers.get(key);
+        if (editingPeer != null) {
+            editingPeer.editCount++;
+            editingPeer.lastEditTime = Duration.currentTimeMillis();
+            editingPeer.changed = true;
+        } else {
+            editingPeer = new EditingPeer(location, peer);
+            editingPeers.put(key, editingPeer);
+            notificationManager.notify(editingPeer.notification);
+        }
+        if (!refreshTimer.isRunning()) {
+            refreshTimer.scheduleRepeating(Math.max(configuration.getEditingNotificationRefresh(), 1));
+        }
+    }
+
+    private void refresh() {
+        double now = Duration.currentTimeMillis();
+        for (Iterator<EditingPeer> iterator = editingPeers.values().iterator(); iterator.hasNext(); ) {
+            EditingPeer editingPeer = iterator.next();
+            if (now - editingPeer.lastEditTime >= configuration.getEditingNotificationTimeout()) {
+                iterator.remove();
+                notificationManager.removeNotification(editingPeer.notification);
+            } else if (editingPeer.changed) {
+                editingPeer.changed = false;
+                editingPeer.update();
+            }
+        }
+        if (editingPeers.isEmpty()) {
+            refreshTimer.cancel();
+        }
+    }
+
+    private static class EditingPeer {
+        private final String             peer;
+        private final StatusNotification notification;
+        private int                      editCount    = 1;
+        private double                   lastEditTime = Duration.currentTimeMillis();
+        private boolean                  changed;
+
+        EditingPeer(String location, String peer) {
+            this.peer = peer;
+            this.notification = new StatusNotification(location + " is being edited", SUCCESS, FLOAT_MODE);
+            this.notification.setTitle(location + " is being edited");
+            update();
+        }
+
+        void update() {
+            notification.setContent(getContent());
+            notification.setState(READ);
+        }
+
+        private String getContent() {
+            return editCount + (editCount == 1 ? " edit" : " edits") + " by " + peer + ", last at "
+                   + TIME_FORMAT.format(new Date((long)lastEditTime));
+        }
+    }
+}
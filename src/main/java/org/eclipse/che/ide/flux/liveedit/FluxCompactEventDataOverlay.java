@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.core.client.JsArrayString;
+
+/**
+ * Decoder of the messages of the compact protocol, see {@link CompactProtocol}. They are routed by their username,
+ * the channel, as the other Flux messages; their data is a positional array under d:
+ * <ul>
+ * <li>liveEditResource: [peer, resourceId, project, resource]</li>
+ * <li>lrc (live resource changed): [peer, resourceId, sequence, offset, removedCharCount, addedCharacters, checksum?, versions?, originTime?]</li>
+ * <li>lcc (live cursor offset changed): [peer, resourceId, offset]</li>
+ * </ul>
+ */
+public class FluxCompactEventDataOverlay extends JavaScriptObject {
+
+    protected FluxCompactEventDataOverlay() {
+    }
+
+    public final native int getPeer() /*-{
+        return this.d[0];
+    }-*/;
+
+    public final native int getResourceId() /*-{
+        return this.d[1];
+    }-*/;
+
+    public final native String getProjectName() /*-{
+        return this.d[2];
+    }-*/;
+
+    public final native String getResourceName() /*-{
+        return this.d[3];
+    }-*/;
+
+    public final native int getSequence() /*-{
+        return this.d[2];
+    }-*/;
+
+    public final native int getOffset() /*-{
+        return this.d[3];
+    }-*/;
+
+    public final native int getRemovedCharCount() /*-{
+        return this.d[4];
+    }-*/;
+
+    public final String getAddedCharacters() {
+        return isCompressed() ? TextCompression.decompress(getCompressedCharacters()) : getRawAddedCharacters();
+    }
+
+    public final native boolean hasChecksum() /*-{
+        return this.d.length > 6 && this.d[6] !== null;
+    }-*/;
+
+    public final native int getChecksum() /*-{
+        return this.d[6] | 0;
+    }-*/;
+
+    public final Map<String, Integer> getVersions() {
+        Map<String, Integer> versions = new HashMap<String, Integer>();
+        JsArrayString peers = getVersionPeers();
+        for (int i = 0; i < peers.length(); i++) {
+            versions.put(peers.get(i), getVersion(peers.get(i)));
+        }
+        return versions;
+    }
+
+    /** The time the sender stamped the edit with, 0 when not sampled. */
+    public final native double getOriginTime() /*-{
+        return this.d[8] || 0;
+    }-*/;
+
+    public final native int getCursorOffset() /*-{
+        return this.d[2];
+    }-*/;
+
+    private native boolean isCompressed() /*-{
+        return typeof this.d[5] !== "string";
+    }-*/;
+
+    private native String getCompressedCharacters() /*-{
+        return this.d[5][0];
+    }-*/;
+
+    private native String getRawAddedCharacters() /*-{
+        return this.d[5];
+    }-*/;
+
+    private native JsArrayString getVersionPeers() /*-{
+        return this.d[7] ? Object.keys(this.d[7]) : [];
+    }-*/;
+
+    private native int getVersion(String peer) /*-{
+        return this.d[7][peer] || 0;
+    }-*/;
+}
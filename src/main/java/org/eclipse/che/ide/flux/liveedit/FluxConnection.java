@@ -0,0 +1,218 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit;
+
+import org.eclipse.che.api.promises.client.Operation;
+import org.eclipse.che.api.promises.client.OperationException;
+import org.eclipse.che.api.promises.client.PromiseError;
+import org.eclipse.che.ide.extension.machine.client.command.CommandManager;
+import org.eclipse.che.ide.socketio.SocketIOOverlay;
+import org.eclipse.che.ide.socketio.SocketOverlay;
+import org.eclipse.che.ide.util.loging.Log;
+
+import com.google.gwt.user.client.Random;
+import com.google.gwt.user.client.Timer;
+
+/**
+ * Connection to the Flux server, driven by the process and socket events.
+ * <p>
+ * IDLE → RESOLVING_URL → CONNECTING → CONNECTED, then DEGRADED when the connection is lost and RECONNECTING while
+ * socket.io tries to get it back. Resolving the url or connecting is retried with an exponential backoff and jitter,
+ * starting over from the url when socket.io gives up reconnecting since the Flux server may have been restarted on
+ * another port.
+ */
+public class FluxConnection {
+
+    public enum State {
+        IDLE, RESOLVING_URL, CONNECTING, CONNECTED, DEGRADED, RECONNECTING
+    }
+
+    public interface Handler {
+        /** A socket has been opened, its message handlers have to be registered. */
+        void onSocketOpened(SocketOverlay socket);
+
+        /** The socket is connected, for the first time or again after the connection was lost. */
+        void onConnected(SocketOverlay socket, boolean reconnected);
+    }
+
+    private final LiveEditConfiguration configuration;
+    private final CommandManager        commandManager;
+    private final SocketIOOverlay       io;
+    private final Handler               handler;
+    private final Timer                 retryTimer   = new Timer() {
+        @Override
+        public void run() {
+            resolveUrl();
+        }
+    };
+    private final Timer                 timeoutTimer = new Timer() {
+        @Override
+        public void run() {
+            Log.info(FluxConnection.class, "timed out connecting to " + url);
+            retry();
+        }
+    };
+    private State                       state        = State.IDLE;
+    private String                      urlTemplate;
+    private String                      url;
+    private SocketOverlay               socket;
+    private int                         attempt;
+    private int                         resolution;
+    private boolean                     everConnected;
+
+    public FluxConnection(LiveEditConfiguration configuration, CommandManager commandManager, SocketIOOverlay io, Handler handler) {
+        this.configuration = configuration;
+        this.commandManager = commandManager;
+        this.io = io;
+        this.handler = handler;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Connects to the Flux server exposed at the url, whose macros are resolved first. Called when the Flux process
+     * is found or started: a pending retry is then done right away.
+     */
+    public void start(String urlTemplate) {
+        if (state == State.CONNECTED && urlTemplate.equals(this.urlTemplate)) {
+            return;
+        }
+        this.urlTemplate = urlTemplate;
+        attempt = 0;
+        retryTimer.cancel();
+        timeoutTimer.cancel();
+        resolveUrl();
+    }
+
+    private void resolveUrl() {
+        setState(State.RESOLVING_URL);
+        final int current = ++resolution;
+        commandManager.substituteProperties(urlTemplate).then(new Operation<String>() {
+            @Override
+            public void apply(String resolvedUrl) throws OperationException {
+                if (current != resolution) {
+                    return;
+                }
+                if (resolvedUrl.contains("$")) {
+                    /* the server port is not exposed yet */
+                    Log.info(FluxConnection.class, "Retrieving the preview url for " + resolvedUrl);
+                    retry();
+                    return;
+                }
+                connect(resolvedUrl);
+            }
+        }).catchError(new Operation<PromiseError>() {
+            @Override
+            public void apply(PromiseError error) throws OperationException {
+                if (current != resolution) {
+                    return;
+                }
+                Log.info(FluxConnection.class, "could not resolve " + urlTemplate + ": " + error.getMessage());
+                retry();
+            }
+        });
+    }
+
+    private void connect(String resolvedUrl) {
+        url = resolvedUrl;
+        setState(State.CONNECTING);
+        closeSocket();
+        final SocketOverlay openedSocket = io.connect(url, configuration.getReconnectBaseDelay(), configuration.getMaxReconnectionAttempts(),
+                                                      configuration.getConnectTimeout());
+        socket = openedSocket;
+        handler.onSocketOpened(openedSocket);
+
+        Runnable connected = new Runnable() {
+            @Override
+            public void run() {
+                if (socket != openedSocket || state == State.CONNECTED) {
+                    return;
+                }
+                timeoutTimer.cancel();
+                attempt = 0;
+                setState(State.CONNECTED);
+                handler.onConnected(openedSocket, everConnected);
+                everConnected = true;
+            }
+        };
+        openedSocket.on("connect", connected);
+        openedSocket.on("reconnect", connected);
+        Runnable failed = new Runnable() {
+            @Override
+            public void run() {
+                if (socket == openedSocket && state == State.CONNECTING) {
+                    Log.info(FluxConnection.class, "error connecting to " + url);
+                    retry();
+                }
+            }
+        };
+        openedSocket.on("error", failed);
+        openedSocket.on("connect_failed", failed);
+        openedSocket.on("disconnect", new Runnable() {
+            @Override
+            public void run() {
+                if (socket == openedSocket && state == State.CONNECTED) {
+                    setState(State.DEGRADED);
+                }
+            }
+        });
+        openedSocket.on("reconnecting", new Runnable() {
+            @Override
+            public void run() {
+                if (socket == openedSocket && state != State.RECONNECTING) {
+                    setState(State.RECONNECTING);
+                }
+            }
+        });
+        openedSocket.on("reconnect_failed", new Runnable() {
+            @Override
+            public void run() {
+                if (socket == openedSocket) {
+                    retry();
+                }
+            }
+        });
+        timeoutTimer.schedule(configuration.getConnectTimeout());
+    }
+
+    /** Starts over from the url after a delay growing exponentially with the failed attempts, with jitter. */
+    private void retry() {
+        timeoutTimer.cancel();
+        closeSocket();
+        int delay = configuration.getReconnectBaseDelay();
+        for (int i = 0; i < attempt && delay < configuration.getReconnectMaxDelay(); i++) {
+            delay *= 2;
+        }
+        delay = Math.min(delay, configuration.getReconnectMaxDelay());
+        attempt++;
+        /* the jitter keeps the peers of a restarted server from reconnecting all at once */
+        delay = delay / 2 + Random.nextInt(delay / 2 + 1);
+        setState(everConnected ? State.RECONNECTING : State.CONNECTING);
+        retryTimer.schedule(delay);
+    }
+
+    private void closeSocket() {
+        if (socket != null) {
+            SocketOverlay closed = socket;
+            socket = null;
+            closed.disconnect();
+        }
+    }
+
+    private void setState(State state) {
+        if (this.state != state) {
+            Log.info(FluxConnection.class, "flux connection " + this.state + " -> " + state + (url != null ? " (" + url + ")" : ""));
+            this.state = state;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit;
+
+import com.google.gwt.core.client.JavaScriptObject;
+
+/**
+ * Payload of the liveEditHello message by which a peer announces its short id for the compact protocol.
+ */
+public class FluxHelloEventDataOverlay extends JavaScriptObject {
+
+    protected FluxHelloEventDataOverlay() {
+    }
+
+    public final native String getChannelName() /*-{
+        return this.channelName;
+    }-*/;
+
+    public final native int getPeer() /*-{
+        return this.peer;
+    }-*/;
+
+    /** Whether this hello answers another one, in which case it must not be answered. */
+    public final native boolean isReply() /*-{
+        return !!this.reply;
+    }-*/;
+}
@@ -0,0 +1,42 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit;
+
+import com.google.gwt.core.client.JavaScriptObject;
+
+/**
+ * Payload of the liveEditApplied message a peer sends back once it applied an edit stamped by its sender.
+ */
+public class FluxLiveEditAppliedEventDataOverlay extends JavaScriptObject {
+
+    protected FluxLiveEditAppliedEventDataOverlay() {
+    }
+
+    /** The peer that applied the edit. */
+    public final native String getChannelName() /*-{
+        return this.channelName;
+    }-*/;
+
+    /** The peer that sent the edit. */
+    public final native String getPeer() /*-{
+        return this.peer;
+    }-*/;
+
+    /** The stamp of the edit, on the sender's clock. */
+    public final native double getTime() /*-{
+        return this.time || 0;
+    }-*/;
+
+    /** How long the edit waited between its receipt and its application. */
+    public final native double getDelay() /*-{
+        return this.delay || 0;
+    }-*/;
+}
@@ -14,7 +14,12 @@ import org.eclipse.che.ide.api.editor.document.Document;
 import org.eclipse.che.ide.api.editor.events.DocumentChangeEvent;
 import org.eclipse.che.ide.socketio.Message;
 
-import com.google.gwt.core.client.JsonUtils;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.core.client.JsArray;
 
 public class FluxMessageBuilder {
     private String fullPath;
@@ -25,6 +30,11 @@ public class FluxMessageBuilder {
     private String resource;
     private String username;
     private String channelName;
+    private int    sequence;
+    private Integer              checksum;
+    private Map<String, Integer> versions;
+    private int                  compressionThreshold;
+    private double               originTime;
 
     public FluxMessageBuilder with(Document document) {
         fullPath = document.getFile().getLocation().toString().substring(1);
@@ -34,6 +44,12 @@ public class FluxMessageBuilder {
     }
 
 
+    public FluxMessageBuilder with(LiveDocument liveDocument) {
+        project = liveDocument.getProject();
+        resource = liveDocument.getResource();
+        return this;
+    }
+
     public FluxMessageBuilder with(DocumentChangeEvent event) {
         return this.with(event.getDocument().getDocument()) //
                    .withAddedCharacters(event.getText()) //
@@ -61,47 +77,387 @@ public class FluxMessageBuilder {
         return this;
     }
 
+    public FluxMessageBuilder withSequence(int sequence) {
+        this.sequence = sequence;
+        return this;
+    }
+
+    /** Piggybacks the document checksum and the version it corresponds to. */
+    public FluxMessageBuilder withChecksum(int checksum, Map<String, Integer> versions) {
+        this.checksum = checksum;
+        this.versions = versions;
+        return this;
+    }
+
+    public FluxMessageBuilder with(LiveEdit edit) {
+        return this.withOffset(edit.getOffset()) //
+                   .withRemovedCharCount(edit.getRemovedCharCount()) //
+                   .withAddedCharacters(edit.getAddedCharacters()) //
+                   .withSequence(edit.getSequence());
+    }
+
+    /** Compresses the characters sent in compact and snapshot messages when there are at least that many, 0 never does. */
+    public FluxMessageBuilder withCompressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+        return this;
+    }
+
+    /** Stamps the edit with the time it is sent, to be echoed back by the peers once applied, see {@link LiveEditMetrics}. */
+    public FluxMessageBuilder withOriginTime(double originTime) {
+        this.originTime = originTime;
+        return this;
+    }
+
     public FluxMessageBuilder withAddedCharacters(String addedCharacters) {
-        this.addedCharacters = JsonUtils.escapeValue(addedCharacters);
+        this.addedCharacters = addedCharacters;
         return this;
     }
 
-    public Message buildResourceRequestMessage() {
-        String json = "{"//
-                      + "\"username\":\""+username+"\","//
-                      + "\"project\":\"" + project + "\","//
-                      + "\"resource\":\"" + resource + "\","//
-                      + "\"channelName\":\"" + channelName + "\"" //
-                      + "}";
+    /*
+     * The payloads are plain object literals filled field by field: no JSON string is built and nothing goes
+     * through the JS parser. They are not pooled since socket.io keeps a reference to the emitted object while
+     * it buffers during a reconnection.
+     */
 
+    public Message buildResourceRequestMessage() {
         return new Message().withType("getResourceRequest")//
-                                .withJsonContent(JsonUtils.unsafeEval(json));
+                            .withJsonContent(createResourceRequest(username, project, resource, channelName));
+    }
+
+    /** Tells the peers this user is leaving the session. */
+    public Message buildLeaveMessage() {
+        return new Message().withType("liveEditLeave")//
+                            .withJsonContent(createResourceRequest(username, null, null, channelName));
+    }
+
+    /** Tells the peers this user closed the resource: they drop its cursor and what they know of its edits. */
+    public Message buildLiveResourceClosedMessage() {
+        return new Message().withType("liveResourceClosed")//
+                            .withJsonContent(createResourceRequest(username, project, resource, channelName));
     }
 
     public Message buildLiveResourceChangeMessage() {
-        String json = "{"//
-                      + "\"username\":\""+username+"\","//
-                      + "\"project\":\"" + project + "\","//
-                      + "\"resource\":\"" + resource + "\"," //
-                      + "\"channelName\":\"" + channelName + "\"," //
-                      + "\"offset\":" + offset + "," //
-                      + "\"removedCharCount\":" + removeCharCount + "," //
-                      + "\"addedCharacters\": " + addedCharacters //
-                      + "}";
+        JavaScriptObject payload = createLiveResourceChange(username, project, resource, channelName, offset, removeCharCount,
+                                                            addedCharacters == null ? "" : addedCharacters, sequence);
+        addChecksum(payload);
+        if (originTime > 0) {
+            setOriginTime(payload, originTime);
+        }
         return new Message().withType("liveResourceChanged")//
-                                .withJsonContent(JsonUtils.unsafeEval(json));
+                            .withJsonContent(payload)//
+                            .withTextLength(addedCharacters == null ? 0 : addedCharacters.length());
+    }
+
+    /** Announces the short id this peer uses in compact messages, see {@link CompactProtocol}. */
+    public Message buildHelloMessage(int peer, boolean reply) {
+        return new Message().withType("liveEditHello")//
+                            .withJsonContent(createHello(username, channelName, peer, reply));
+    }
+
+    /*
+     * The compact messages are routed like the others, by the channel set with withUserName: only their data is a
+     * positional array, see FluxCompactEventDataOverlay.
+     */
+
+    /** Binds a short id to the project and resource set on this builder. */
+    public Message buildCompactResourceMessage(int peer, int resourceId) {
+        return new Message().withType("liveEditResource")//
+                            .withJsonContent(createCompactResource(username, peer, resourceId, project, resource));
+    }
+
+    public Message buildCompactLiveResourceChangeMessage(int peer, int resourceId) {
+        String compressed = compress(addedCharacters);
+        JavaScriptObject payload = createCompactLiveResourceChange(username, peer, resourceId, sequence, offset, removeCharCount,
+                                                                   compressed != null || addedCharacters == null ? "" : addedCharacters);
+        if (compressed != null) {
+            setCompressedCharacters(payload, compressed);
+        }
+        if (checksum != null) {
+            addCompactChecksum(payload, checksum, createVersions());
+        }
+        if (originTime > 0) {
+            addCompactOriginTime(payload, originTime);
+        }
+        return new Message().withType("lrc")//
+                            .withJsonContent(payload)//
+                            .withTextLength(compressed != null ? compressed.length() : addedCharacters == null ? 0 : addedCharacters.length());
+    }
+
+    public Message buildCompactLiveCursorOffsetChangeMessage(int peer, int resourceId) {
+        return new Message().withType("lcc")//
+                            .withJsonContent(createCompactLiveCursorOffsetChange(username, peer, resourceId, offset));
+    }
+
+    /** Asks the given peer for a snapshot of its live content of the resource. */
+    public Message buildLiveResourceRequestMessage(String peer) {
+        return new Message().withType("getLiveResourceRequest")//
+                            .withJsonContent(createLiveResourceOperationsRequest(username, project, resource, channelName, peer, 0));
+    }
+
+    /** The same request as a liveResourceStarted message of the Flux protocol, which the stock Flux server relays. */
+    public Message buildLiveResourceStartedMessage(String peer) {
+        return buildLiveResourceRequestMessage(peer).withType("liveResourceStarted");
+    }
+
+    /**
+     * The snapshot as a single liveResourceStartedResponse message of the Flux protocol, which the stock Flux server
+     * relays, see {@link #buildLiveResourceSnapshotMessages(String, String, int)}.
+     */
+    public Message buildLiveResourceStartedResponseMessage(String peer, String content) {
+        return buildLiveResourceSnapshotMessages(peer, content, Math.max(1, content.length())).get(0).withType("liveResourceStartedResponse");
+    }
+
+    /**
+     * Sends the live content of the resource to the given peer as a stream of chunks of at most chunkSize characters,
+     * the last one carrying the checksum and version set on this builder.
+     */
+    public List<Message> buildLiveResourceSnapshotMessages(String peer, String content, int chunkSize) {
+        List<Message> chunks = new ArrayList<Message>();
+        int chunkCount = Math.max(1, (content.length() + chunkSize - 1) / chunkSize);
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            String part = content.substring(chunk * chunkSize, Math.min(content.length(), (chunk + 1) * chunkSize));
+            String compressed = compress(part);
+            JavaScriptObject payload = createLiveResourceSnapshot(username, project, resource, channelName, peer,
+                                                                  compressed != null ? compressed : part, compressed != null,
+                                                                  chunk, chunkCount);
+            if (chunk == chunkCount - 1) {
+                addChecksum(payload);
+            }
+            chunks.add(new Message().withType("liveResourceSnapshot")//
+                                    .withJsonContent(payload)//
+                                    .withTextLength(compressed != null ? compressed.length() : part.length()));
+        }
+        return chunks;
+    }
+
+    /** Asks the given peer for its edits of the resource following the sequence number set with {@link #withSequence(int)}. */
+    public Message buildLiveResourceOperationsRequestMessage(String peer) {
+        return new Message().withType("getLiveResourceOperationsRequest")//
+                            .withJsonContent(createLiveResourceOperationsRequest(username, project, resource, channelName, peer, sequence));
+    }
+
+    /** Answers a peer's resync request. A null list means the edits are no longer all in the history. */
+    public Message buildLiveResourceOperationsResponseMessage(String peer, List<LiveEdit> edits) {
+        JsArray<JavaScriptObject> operations = JavaScriptObject.createArray().cast();
+        if (edits != null) {
+            for (LiveEdit edit : edits) {
+                operations.push(createOperation(edit.getSequence(), edit.getOffset(), edit.getRemovedCharCount(), edit.getAddedCharacters()));
+            }
+        }
+        return new Message().withType("liveResourceOperationsResponse")//
+                            .withJsonContent(createLiveResourceOperationsResponse(username, project, resource, channelName, peer,
+                                                                                  edits != null, operations));
+    }
+
+    /** Echoes an edit stamped by the given peer, once applied here after having waited applyDelay since its receipt. */
+    public Message buildLiveEditAppliedMessage(String peer, double originTime, double applyDelay) {
+        return new Message().withType("liveEditApplied")//
+                            .withJsonContent(createLiveEditApplied(username, channelName, peer, originTime, applyDelay));
     }
 
     public Message buildLiveCursorOffsetChangeMessage() {
-        String json = "{"//
-                + "\"username\":\""+username+"\","//
-                + "\"project\":\"" + project + "\","//
-                + "\"resource\":\"" + resource + "\"," //
-                + "\"channelName\":\"" + channelName + "\"," //
-                + "\"offset\":" + offset + "," //
-                + "}";
         return new Message().withType("liveCursorOffsetChanged")//
-                .withJsonContent(JsonUtils.unsafeEval(json));
+                            .withJsonContent(createLiveCursorOffsetChange(username, project, resource, channelName, offset));
+    }
+
+    public Message buildConnectToChannelMessage() {
+        return new Message().withType("connectToChannel")//
+                            .withJsonContent(createConnectToChannel(username));
+    }
+
+    /** Stops receiving the events of the channel set with {@link #withUserName(String)}. */
+    public Message buildDisconnectFromChannelMessage() {
+        return new Message().withType("disconnectFromChannel")//
+                            .withJsonContent(createConnectToChannel(username));
+    }
+
+    private static native JavaScriptObject createResourceRequest(String username, String project, String resource,
+                                                                 String channelName) /*-{
+        return {
+            "username": username,
+            "project": project,
+            "resource": resource,
+            "channelName": channelName
+        };
+    }-*/;
+
+    private static native JavaScriptObject createLiveResourceChange(String username, String project, String resource, String channelName,
+                                                                    int offset, int removedCharCount, String addedCharacters,
+                                                                    int sequence) /*-{
+        return {
+            "username": username,
+            "project": project,
+            "resource": resource,
+            "channelName": channelName,
+            "offset": offset,
+            "removedCharCount": removedCharCount,
+            "addedCharacters": addedCharacters,
+            "sequence": sequence
+        };
+    }-*/;
+
+    private static native JavaScriptObject createLiveResourceOperationsRequest(String username, String project, String resource,
+                                                                               String channelName, String peer, int sequence) /*-{
+        return {
+            "username": username,
+            "project": project,
+            "resource": resource,
+            "channelName": channelName,
+            "peer": peer,
+            "sequence": sequence
+        };
+    }-*/;
+
+    private static native JavaScriptObject createLiveResourceOperationsResponse(String username, String project, String resource,
+                                                                                String channelName, String peer, boolean complete,
+                                                                                JavaScriptObject operations) /*-{
+        return {
+            "username": username,
+            "project": project,
+            "resource": resource,
+            "channelName": channelName,
+            "peer": peer,
+            "complete": complete,
+            "operations": operations
+        };
+    }-*/;
+
+    private static native JavaScriptObject createLiveResourceSnapshot(String username, String project, String resource,
+                                                                      String channelName, String peer, String content,
+                                                                      boolean compressed, int chunk, int chunkCount) /*-{
+        return {
+            "username": username,
+            "project": project,
+            "resource": resource,
+            "channelName": channelName,
+            "peer": peer,
+            "content": content,
+            "compressed": compressed,
+            "chunk": chunk,
+            "chunkCount": chunkCount
+        };
+    }-*/;
+
+    private String compress(String characters) {
+        if (compressionThreshold <= 0 || characters == null || characters.length() < compressionThreshold) {
+            return null;
+        }
+        return TextCompression.compress(characters);
+    }
+
+    private void addChecksum(JavaScriptObject payload) {
+        if (checksum == null) {
+            return;
+        }
+        setChecksum(payload, checksum, createVersions());
+    }
+
+    private JavaScriptObject createVersions() {
+        JavaScriptObject versionsObject = JavaScriptObject.createObject();
+        for (Map.Entry<String, Integer> version : versions.entrySet()) {
+            setVersion(versionsObject, version.getKey(), version.getValue());
+        }
+        return versionsObject;
     }
 
+    private static native JavaScriptObject createHello(String username, String channelName, int peer, boolean reply) /*-{
+        return {
+            "username": username,
+            "channelName": channelName,
+            "peer": peer,
+            "reply": reply
+        };
+    }-*/;
+
+    private static native JavaScriptObject createCompactResource(String username, int peer, int resourceId, String project,
+                                                                 String resource) /*-{
+        return {
+            "username": username,
+            "d": [peer, resourceId, project, resource]
+        };
+    }-*/;
+
+    private static native JavaScriptObject createCompactLiveResourceChange(String username, int peer, int resourceId, int sequence,
+                                                                           int offset, int removedCharCount, String addedCharacters) /*-{
+        return {
+            "username": username,
+            "d": [peer, resourceId, sequence, offset, removedCharCount, addedCharacters]
+        };
+    }-*/;
+
+    /* an array instead of a string tells the receiver the characters are compressed */
+    private static native void setCompressedCharacters(JavaScriptObject payload, String compressed) /*-{
+        payload.d[5] = [compressed];
+    }-*/;
+
+    private static native void addCompactChecksum(JavaScriptObject payload, int checksum, JavaScriptObject versions) /*-{
+        payload.d.push(checksum, versions);
+    }-*/;
+
+    /* the checksum slots are left empty when the edit is stamped without a checksum */
+    private static native void addCompactOriginTime(JavaScriptObject payload, double originTime) /*-{
+        if (payload.d.length < 8) {
+            payload.d.push(null, null);
+        }
+        payload.d.push(originTime);
+    }-*/;
+
+    private static native JavaScriptObject createCompactLiveCursorOffsetChange(String username, int peer, int resourceId,
+                                                                               int offset) /*-{
+        return {
+            "username": username,
+            "d": [peer, resourceId, offset]
+        };
+    }-*/;
+
+    private static native void setVersion(JavaScriptObject versions, String peer, int sequence) /*-{
+        versions[peer] = sequence;
+    }-*/;
+
+    private static native void setChecksum(JavaScriptObject payload, int checksum, JavaScriptObject versions) /*-{
+        payload.checksum = checksum;
+        payload.versions = versions;
+    }-*/;
+
+    private static native void setOriginTime(JavaScriptObject payload, double originTime) /*-{
+        payload.time = originTime;
+    }-*/;
+
+    private static native JavaScriptObject createLiveEditApplied(String username, String channelName, String peer, double time,
+                                                                 double delay) /*-{
+        return {
+            "username": username,
+            "channelName": channelName,
+            "peer": peer,
+            "time": time,
+            "delay": delay
+        };
+    }-*/;
+
+    private static native JavaScriptObject createOperation(int sequence, int offset, int removedCharCount, String addedCharacters) /*-{
+        return {
+            "sequence": sequence,
+            "offset": offset,
+            "removedCharCount": removedCharCount,
+            "addedCharacters": addedCharacters
+        };
+    }-*/;
+
+    private static native JavaScriptObject createLiveCursorOffsetChange(String username, String project, String resource,
+                                                                        String channelName, int offset) /*-{
+        return {
+            "username": username,
+            "project": project,
+            "resource": resource,
+            "channelName": channelName,
+            "offset": offset
+        };
+    }-*/;
+
+    private static native JavaScriptObject createConnectToChannel(String channel) /*-{
+        return {
+            "channel": channel
+        };
+    }-*/;
+
 }
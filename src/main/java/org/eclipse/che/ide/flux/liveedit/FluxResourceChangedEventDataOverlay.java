@@ -10,7 +10,11 @@
  *******************************************************************************/
 package org.eclipse.che.ide.flux.liveedit;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.core.client.JsArrayString;
 
 public class FluxResourceChangedEventDataOverlay extends JavaScriptObject {
 
@@ -49,5 +53,40 @@ public class FluxResourceChangedEventDataOverlay extends JavaScriptObject {
         return this.channelName;
     }-*/;
 
+    public final native int getSequence() /*-{
+        return this.sequence || 0;
+    }-*/;
+
+    /** Whether the sender piggybacked its document checksum and version on the message. */
+    public final native boolean hasChecksum() /*-{
+        return typeof this.checksum === 'number';
+    }-*/;
+
+    public final native int getChecksum() /*-{
+        return this.checksum | 0;
+    }-*/;
+
+    /** The time the sender stamped the edit with, 0 when not sampled. */
+    public final native double getOriginTime() /*-{
+        return this.time || 0;
+    }-*/;
+
+    public final Map<String, Integer> getVersions() {
+        Map<String, Integer> versions = new HashMap<String, Integer>();
+        JsArrayString peers = getVersionPeers();
+        for (int i = 0; i < peers.length(); i++) {
+            versions.put(peers.get(i), getVersion(peers.get(i)));
+        }
+        return versions;
+    }
+
+    private native JsArrayString getVersionPeers() /*-{
+        return this.versions ? Object.keys(this.versions) : [];
+    }-*/;
+
+    private native int getVersion(String peer) /*-{
+        return this.versions[peer] || 0;
+    }-*/;
+
 
 }
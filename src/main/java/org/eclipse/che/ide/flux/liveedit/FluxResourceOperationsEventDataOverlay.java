@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit;
+
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.core.client.JsArray;
+
+/**
+ * Payload of the getLiveResourceOperationsRequest and liveResourceOperationsResponse messages
+ * exchanged by peers to fill a gap in a resource's edit stream.
+ */
+public class FluxResourceOperationsEventDataOverlay extends JavaScriptObject {
+
+    protected FluxResourceOperationsEventDataOverlay() {
+    }
+
+    public final native String getProject() /*-{
+        return this.project;
+    }-*/;
+
+    public final native String getResource() /*-{
+        return this.resource;
+    }-*/;
+
+    /** The peer sending the message. */
+    public final native String getChannelName() /*-{
+        return this.channelName;
+    }-*/;
+
+    /** The peer the message is addressed to. */
+    public final native String getPeer() /*-{
+        return this.peer;
+    }-*/;
+
+    /** For a request, the last sequence number the requester applied. */
+    public final native int getSequence() /*-{
+        return this.sequence || 0;
+    }-*/;
+
+    /** For a response, false when the requested edits are no longer all available. */
+    public final native boolean isComplete() /*-{
+        return !!this.complete;
+    }-*/;
+
+    public final native JsArray<FluxResourceChangedEventDataOverlay> getOperations() /*-{
+        return this.operations || [];
+    }-*/;
+}
@@ -0,0 +1,47 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit;
+
+/**
+ * Payload of the liveResourceSnapshot message: the whole live content of a resource, with the checksum and
+ * version it had when the snapshot was taken.
+ */
+public class FluxResourceSnapshotEventDataOverlay extends FluxResourceChangedEventDataOverlay {
+
+    protected FluxResourceSnapshotEventDataOverlay() {
+    }
+
+    /** The peer the snapshot is addressed to. */
+    public final native String getPeer() /*-{
+        return this.peer;
+    }-*/;
+
+    /** The content carried by this chunk of the snapshot. */
+    public final String getContent() {
+        return isCompressed() ? TextCompression.decompress(getRawContent()) : getRawContent();
+    }
+
+    public final native int getChunk() /*-{
+        return this.chunk || 0;
+    }-*/;
+
+    public final native int getChunkCount() /*-{
+        return this.chunkCount || 1;
+    }-*/;
+
+    private native boolean isCompressed() /*-{
+        return !!this.compressed;
+    }-*/;
+
+    private native String getRawContent() /*-{
+        return this.content;
+    }-*/;
+}
@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit;
+
+import org.eclipse.che.ide.api.editor.text.TextPosition;
+
+/**
+ * Offsets of the line starts of a live document, kept up to date edit by edit, to convert offsets to positions
+ * without asking the editor. A line ends after a '\n', which covers "\r\n" too.
+ * <p>
+ * Lookups are binary searches. An edit shifts all the following line starts, which is deferred: the starts from
+ * {@code shiftFrom} on are stored without the pending {@code shift}, and moving that boundary only touches the
+ * lines between two consecutive edits. Typing at one place thus costs O(1) per edit, plus an array copy when
+ * lines are added or removed.
+ */
+public class LineIndex {
+    private int[] starts = new int[16];
+    private int   lineCount;
+    private int   shiftFrom;
+    private int   shift;
+    private int   length;
+
+    public LineIndex(String text) {
+        reset(text);
+    }
+
+    public void reset(String text) {
+        lineCount = 0;
+        shiftFrom = 0;
+        shift = 0;
+        length = text.length();
+        append(0);
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                append(i + 1);
+            }
+        }
+        shiftFrom = lineCount;
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public int getLineStart(int line) {
+        return line >= shiftFrom ? starts[line] + shift : starts[line];
+    }
+
+    /** The line the offset is on, the offset of a line break being on the line it ends. */
+    public int getLine(int offset) {
+        int low = 0;
+        int high = lineCount - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (getLineStart(middle) <= offset) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    public TextPosition getPosition(int offset) {
+        offset = Math.max(0, Math.min(offset, length));
+        int line = getLine(offset);
+        return new TextPosition(line, offset - getLineStart(line));
+    }
+
+    public int getOffset(TextPosition position) {
+        int line = Math.max(0, Math.min(position.getLine(), lineCount - 1));
+        return Math.min(getLineStart(line) + position.getCharacter(), length);
+    }
+
+    public void replace(int offset, int removedCharCount, String addedCharacters) {
+        offset = Math.max(0, Math.min(offset, length));
+        removedCharCount = Math.max(0, Math.min(removedCharCount, length - offset));
+        int firstLine = getLine(offset);
+        /* the starts of the lines after firstLine up to lastLine fall in the removed range */
+        int lastLine = getLine(offset + removedCharCount);
+        moveShift(lastLine + 1);
+
+        int addedLineCount = 0;
+        for (int i = 0; i < addedCharacters.length(); i++) {
+            if (addedCharacters.charAt(i) == '\n') {
+                addedLineCount++;
+            }
+        }
+        int removedLineCount = lastLine - firstLine;
+        if (addedLineCount != removedLineCount) {
+            ensureCapacity(lineCount - removedLineCount + addedLineCount);
+            System.arraycopy(starts, lastLine + 1, starts, firstLine + 1 + addedLineCount, lineCount - (lastLine + 1));
+        }
+        int line = firstLine + 1;
+        for (int i = 0; i < addedCharacters.length(); i++) {
+            if (addedCharacters.charAt(i) == '\n') {
+                starts[line++] = offset + i + 1;
+            }
+        }
+        lineCount += addedLineCount - removedLineCount;
+        shiftFrom = firstLine + 1 + addedLineCount;
+        shift += addedCharacters.length() - removedCharCount;
+        length += addedCharacters.length() - removedCharCount;
+    }
+
+    /** Makes the pending shift apply from the given line on, the lines in between being updated. */
+    private void moveShift(int line) {
+        for (int i = line; i < shiftFrom; i++) {
+            starts[i] -= shift;
+        }
+        for (int i = shiftFrom; i < line; i++) {
+            starts[i] += shift;
+        }
+        shiftFrom = line;
+    }
+
+    private void append(int start) {
+        ensureCapacity(lineCount + 1);
+        starts[lineCount++] = start;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > starts.length) {
+            int[] grown = new int[Math.max(capacity, starts.length * 2)];
+            System.arraycopy(starts, 0, grown, 0, lineCount);
+            starts = grown;
+        }
+    }
+}
@@ -0,0 +1,362 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.che.ide.api.editor.EditorAgent;
+import org.eclipse.che.ide.api.editor.EditorPartPresenter;
+import org.eclipse.che.ide.api.editor.document.Document;
+import org.eclipse.che.ide.api.editor.texteditor.HasTextMarkers;
+import org.eclipse.che.ide.api.editor.texteditor.TextEditorPresenter;
+import org.eclipse.che.ide.resource.Path;
+
+import com.google.web.bindery.event.shared.HandlerRegistration;
+
+/**
+ * Live state of a shared document: the session holding everything needed to apply remote events to it, resolved
+ * once and reused for every event (editor, text markers, remote cursors).
+ * <p>
+ * Flux only relays messages, there is no central sequencer: every peer numbers its own edits of a resource and
+ * the version of the document is the last sequence number applied from each peer. Edits arriving after a gap are
+ * held back until the missing ones have been fetched from the peer that made them, see {@link EditSequencer}.
+ */
+public class LiveDocument {
+    private final Document                                     document;
+    private final EditorAgent                                  editorAgent;
+    private final Path                                         location;
+    private final String                                       project;
+    private final String                                       resource;
+    private final EditSequencer                                sequencer;
+    private final Map<String, CursorHandlerForPairProgramming> remoteCursors    = new HashMap<String, CursorHandlerForPairProgramming>();
+    private final DocumentChecksum                             checksum         = new DocumentChecksum();
+    private final List<HandlerRegistration>                    registrations    = new ArrayList<HandlerRegistration>();
+    private final OfflineEditLog                               offlineEdits     = new OfflineEditLog();
+    private final LineIndex                                    lineIndex;
+    private CursorModelForPairProgramming                      cursorModel;
+    private double                                             lastChecksumSendTime;
+    private TextEditorPresenter                                textEditor;
+    private String                                             expectedChecksumPeer;
+    private int                                                expectedChecksum;
+    private Map<String, Integer>                               expectedChecksumVersions;
+    private boolean                                            checksumStale;
+    private StringBuilder                                      incomingSnapshot;
+    private String                                             incomingSnapshotPeer;
+    private int                                                incomingSnapshotChunk;
+
+    /* the document as the checksum reads it: its length is the line index's, which follows every change */
+    private final DocumentChecksum.Text documentText = new DocumentChecksum.Text() {
+        @Override
+        public int length() {
+            return lineIndex.getLength();
+        }
+
+        @Override
+        public String getText(int start, int end) {
+            return document.getContentRange(start, end - start);
+        }
+    };
+
+    public LiveDocument(Document document, EditorAgent editorAgent, int historySize) {
+        this.document = document;
+        this.editorAgent = editorAgent;
+        this.location = document.getFile().getLocation();
+        String fullPath = location.toString().substring(1);
+        this.project = fullPath.substring(0, fullPath.indexOf('/'));
+        this.resource = fullPath.substring(fullPath.indexOf('/') + 1);
+        this.sequencer = new EditSequencer(historySize);
+        String contents = document.getContents();
+        this.checksum.reset(contents);
+        this.lineIndex = new LineIndex(contents);
+    }
+
+    public Document getDocument() {
+        return document;
+    }
+
+    /** The line starts of the document, to be updated on every change of the document. */
+    public LineIndex getLineIndex() {
+        return lineIndex;
+    }
+
+    public Path getLocation() {
+        return location;
+    }
+
+    public String getProject() {
+        return project;
+    }
+
+    public String getResource() {
+        return resource;
+    }
+
+    /** The text editor showing the document, null if it is not opened. */
+    public TextEditorPresenter getTextEditor() {
+        if (textEditor == null) {
+            EditorPartPresenter openedEditor = editorAgent.getOpenedEditor(location);
+            if (openedEditor instanceof TextEditorPresenter) {
+                textEditor = (TextEditorPresenter)openedEditor;
+            }
+        }
+        return textEditor;
+    }
+
+    public HasTextMarkers getHasTextMarkers() {
+        TextEditorPresenter editor = getTextEditor();
+        return editor == null ? null : editor.getHasTextMarkers();
+    }
+
+    /** Forgets the editor and the markers it displayed, when it is closed or opened again. */
+    public void invalidateEditor() {
+        textEditor = null;
+        for (CursorHandlerForPairProgramming remoteCursor : remoteCursors.values()) {
+            remoteCursor.setMarkerRegistration(null);
+            remoteCursor.setRenderedOffset(-1);
+        }
+    }
+
+    public void setCursorModel(CursorModelForPairProgramming cursorModel) {
+        this.cursorModel = cursorModel;
+    }
+
+    /** Keeps a handler registered for this document, to be removed when it is released. */
+    public void addHandlerRegistration(HandlerRegistration handlerRegistration) {
+        registrations.add(handlerRegistration);
+    }
+
+    /** Number of handlers registered for this document, including the cursor model. */
+    public int getHandlerCount() {
+        return registrations.size() + (cursorModel != null ? 1 : 0);
+    }
+
+    /** Unregisters the handlers and clears the remote cursors, once the document has been closed. */
+    public void release() {
+        for (HandlerRegistration handlerRegistration : registrations) {
+            handlerRegistration.removeHandler();
+        }
+        registrations.clear();
+        if (cursorModel != null) {
+            cursorModel.release();
+            cursorModel = null;
+        }
+        for (String peer : new ArrayList<String>(remoteCursors.keySet())) {
+            removeRemoteCursor(peer);
+        }
+        textEditor = null;
+        sequencer.release();
+        incomingSnapshot = null;
+    }
+
+    public Collection<CursorHandlerForPairProgramming> getRemoteCursors() {
+        return remoteCursors.values();
+    }
+
+    public CursorHandlerForPairProgramming getRemoteCursor(String peer) {
+        return remoteCursors.get(peer);
+    }
+
+    public void putRemoteCursor(String peer, CursorHandlerForPairProgramming remoteCursor) {
+        remoteCursors.put(peer, remoteCursor);
+    }
+
+    /** Removes the cursor of a peer and its marker, e.g. when the peer closed the document. */
+    public void removeRemoteCursor(String peer) {
+        CursorHandlerForPairProgramming remoteCursor = remoteCursors.remove(peer);
+        if (remoteCursor != null && remoteCursor.getMarkerRegistration() != null) {
+            remoteCursor.clearMark();
+            remoteCursor.setMarkerRegistration(null);
+        }
+    }
+
+    public LiveEdit recordLocalEdit(String peer, int offset, int removedCharCount, String addedCharacters) {
+        return sequencer.recordLocalEdit(peer, offset, removedCharCount, addedCharacters);
+    }
+
+    /**
+     * To be called once a local edit is sent, current telling whether the document holds no other unsent edit.
+     * The characters an edit removed are no longer in the document: the checksum cannot follow such an edit and
+     * is computed again from the document the next time it is needed.
+     */
+    public void localEditSent(int offset, int removedCharCount, String addedCharacters, boolean current) {
+        if (checksumStale) {
+            return;
+        }
+        if (current && removedCharCount == 0) {
+            checksum.inserted(documentText, offset, addedCharacters.length());
+        } else {
+            checksumStale = true;
+        }
+    }
+
+    /** To be called right before a remote edit is applied to the document. */
+    public void remoteEditApplying(LiveEdit edit) {
+        if (!checksumStale) {
+            checksum.replace(documentText, edit.getOffset(), edit.getRemovedCharCount(), edit.getAddedCharacters());
+        }
+    }
+
+    /**
+     * Checksum of the document as of the last edit sent or applied, to be taken when the document holds no unsent
+     * edit.
+     */
+    public int getChecksum() {
+        if (checksumStale) {
+            resetChecksum();
+        }
+        return checksum.getValue();
+    }
+
+    /** Whether the checksum should be piggybacked on the next edit sent, given the configured interval. */
+    public boolean isChecksumDue(double now, int interval) {
+        if (interval <= 0 || now - lastChecksumSendTime < interval) {
+            return false;
+        }
+        lastChecksumSendTime = now;
+        return true;
+    }
+
+    /** Remembers the checksum a peer announced, to be verified once the edits received so far have been applied. */
+    public void expectChecksum(String peer, int checksum, Map<String, Integer> versions) {
+        expectedChecksumPeer = peer;
+        expectedChecksum = checksum;
+        expectedChecksumVersions = versions;
+    }
+
+    public String getExpectedChecksumPeer() {
+        return expectedChecksumPeer;
+    }
+
+    public int getExpectedChecksum() {
+        return expectedChecksum;
+    }
+
+    public Map<String, Integer> getExpectedChecksumVersions() {
+        return expectedChecksumVersions;
+    }
+
+    public void clearExpectedChecksum() {
+        expectedChecksumPeer = null;
+        expectedChecksumVersions = null;
+    }
+
+    /** See {@link EditSequencer#getVersions(String)}. */
+    public Map<String, Integer> getVersions(String localPeer) {
+        return sequencer.getVersions(localPeer);
+    }
+
+    /** Replaces the whole content by a peer's snapshot taken at the given version. */
+    public void snapshotApplied(String localPeer, String contents, Map<String, Integer> versions) {
+        checksum.reset(contents);
+        checksumStale = false;
+        sequencer.reset(localPeer, versions);
+    }
+
+    /**
+     * Collects the chunks of a snapshot streamed by a peer. Returns the whole content once the last chunk has been
+     * received, null until then or if a chunk went missing, in which case the snapshot is dropped.
+     */
+    public String snapshotChunkReceived(String peer, int chunk, int chunkCount, String content) {
+        if (chunk == 0) {
+            incomingSnapshot = new StringBuilder();
+            incomingSnapshotPeer = peer;
+        } else if (incomingSnapshot == null || !peer.equals(incomingSnapshotPeer) || chunk != incomingSnapshotChunk) {
+            incomingSnapshot = null;
+            return null;
+        }
+        incomingSnapshot.append(content);
+        incomingSnapshotChunk = chunk + 1;
+        if (incomingSnapshotChunk < chunkCount) {
+            return null;
+        }
+        String snapshot = incomingSnapshot.toString();
+        incomingSnapshot = null;
+        return snapshot;
+    }
+
+    /** Local edits following the given sequence number, null if some of them are no longer in the history. */
+    public List<LiveEdit> getLocalEditsSince(int sequence) {
+        return sequencer.getLocalEditsSince(sequence);
+    }
+
+    /** See {@link EditSequencer#receive(LiveEdit)}. */
+    public List<LiveEdit> receive(LiveEdit edit) {
+        return sequencer.receive(edit);
+    }
+
+    /** See {@link EditSequencer#skipGap(String)}. */
+    public List<LiveEdit> skipGap(String peer) {
+        return sequencer.skipGap(peer);
+    }
+
+    public boolean hasGap(String peer) {
+        return sequencer.hasGap(peer);
+    }
+
+    /** Whether edits of some peer are held back, waiting for missing ones. */
+    public boolean hasGaps() {
+        return sequencer.hasGaps();
+    }
+
+    /** Last sequence number applied from the peer, 0 if none. */
+    public int getAppliedSequence(String peer) {
+        return sequencer.getAppliedSequence(peer);
+    }
+
+    public Set<String> getPeers() {
+        return sequencer.getPeers();
+    }
+
+    /** Returns true if no resync of the peer's edits is already in progress. */
+    public boolean markResyncRequested(String peer) {
+        return sequencer.markResyncRequested(peer);
+    }
+
+    /** Called once the peer answered a resync request, whether or not it filled the gap. */
+    public void resyncCompleted(String peer) {
+        sequencer.resyncCompleted(peer);
+    }
+
+    /** Whether some peers have not answered a resync request yet. */
+    public boolean isResyncPending() {
+        return sequencer.isResyncPending();
+    }
+
+    /** The local edits made while disconnected and not sent yet. */
+    public OfflineEditLog getOfflineEdits() {
+        return offlineEdits;
+    }
+
+    /**
+     * To be called once the offline edits have been recorded and sent: the checksum did not follow them and is
+     * taken from the document again.
+     */
+    public void offlineEditsReplayed() {
+        offlineEdits.clear();
+        resetChecksum();
+    }
+
+    /** Computes the checksum from the document again, when it could not follow the edits made. */
+    public void resetChecksum() {
+        checksum.reset(document.getContents());
+        checksumStale = false;
+    }
+
+    /** Forgets what was applied from the peer, after the document has been reloaded as a whole. */
+    public void resetPeer(String peer) {
+        sequencer.resetPeer(peer);
+    }
+}
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The live documents, indexed by project and resource so that incoming Flux events are dispatched
+ * without building their path.
+ */
+public class LiveDocumentRegistry {
+    private final Map<String, Map<String, LiveDocument>> documentsByProject = new HashMap<String, Map<String, LiveDocument>>();
+
+    public LiveDocument get(String project, String resource) {
+        Map<String, LiveDocument> documents = documentsByProject.get(project);
+        return documents == null ? null : documents.get(resource);
+    }
+
+    /** Looks a document up by its location, e.g. /project/folder/file.txt */
+    public LiveDocument get(String location) {
+        String fullPath = location.substring(1);
+        int separator = fullPath.indexOf('/');
+        return separator < 0 ? null : get(fullPath.substring(0, separator), fullPath.substring(separator + 1));
+    }
+
+    public void put(LiveDocument liveDocument) {
+        Map<String, LiveDocument> documents = documentsByProject.get(liveDocument.getProject());
+        if (documents == null) {
+            documents = new HashMap<String, LiveDocument>();
+            documentsByProject.put(liveDocument.getProject(), documents);
+        }
+        documents.put(liveDocument.getResource(), liveDocument);
+    }
+
+    /** Removes the document, unless another one has been registered at its location since. */
+    public void remove(LiveDocument liveDocument) {
+        Map<String, LiveDocument> documents = documentsByProject.get(liveDocument.getProject());
+        if (documents == null || documents.get(liveDocument.getResource()) != liveDocument) {
+            return;
+        }
+        documents.remove(liveDocument.getResource());
+        if (documents.isEmpty()) {
+            documentsByProject.remove(liveDocument.getProject());
+        }
+    }
+
+    public boolean contains(LiveDocument liveDocument) {
+        return get(liveDocument.getProject(), liveDocument.getResource()) == liveDocument;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Map<String, LiveDocument> documents : documentsByProject.values()) {
+            size += documents.size();
+        }
+        return size;
+    }
+
+    /** Number of handlers the live documents registered, for monitoring. */
+    public int getHandlerCount() {
+        int handlerCount = 0;
+        for (Map<String, LiveDocument> documents : documentsByProject.values()) {
+            for (LiveDocument liveDocument : documents.values()) {
+                handlerCount += liveDocument.getHandlerCount();
+            }
+        }
+        return handlerCount;
+    }
+
+    public List<LiveDocument> values() {
+        List<LiveDocument> values = new ArrayList<LiveDocument>();
+        for (Map<String, LiveDocument> documents : documentsByProject.values()) {
+            values.addAll(documents.values());
+        }
+        return values;
+    }
+}
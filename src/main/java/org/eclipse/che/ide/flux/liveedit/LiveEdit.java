@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit;
+
+/**
+ * A text replacement on a live document, as sent or received through Flux.
+ */
+public class LiveEdit {
+    private final String peer;
+    private final int    sequence;
+    private final int    offset;
+    private final int    removedCharCount;
+    private final String addedCharacters;
+    private double       originTime;
+    private double       receivedTime;
+
+    public LiveEdit(String peer, int sequence, int offset, int removedCharCount, String addedCharacters) {
+        this.peer = peer;
+        this.sequence = sequence;
+        this.offset = offset;
+        this.removedCharCount = removedCharCount;
+        this.addedCharacters = addedCharacters == null ? "" : addedCharacters;
+    }
+
+    public static LiveEdit fromEvent(String peer, FluxResourceChangedEventDataOverlay event) {
+        return new LiveEdit(peer, event.getSequence(), event.getOffset(), event.getRemovedCharCount(), event.getAddedCharacters());
+    }
+
+    public LiveEdit withOffset(int offset) {
+        return new LiveEdit(peer, sequence, offset, removedCharCount, addedCharacters).timedAs(this);
+    }
+
+    /** Stamps a sampled edit with the time the sender sent it, on the sender's clock, and the time it was received here. */
+    public LiveEdit withTiming(double originTime, double receivedTime) {
+        LiveEdit edit = new LiveEdit(peer, sequence, offset, removedCharCount, addedCharacters);
+        edit.originTime = originTime;
+        edit.receivedTime = receivedTime;
+        return edit;
+    }
+
+    /**
+     * Merges the given edit, made by the same peer right after this one, when both touch contiguous text:
+     * typing after the added characters, deleting forward from their end or backspacing over them.
+     * Returns null when the edits cannot be expressed as a single replacement.
+     */
+    public LiveEdit mergeWith(LiveEdit next) {
+        if (peer == null || !peer.equals(next.peer)) {
+            return null;
+        }
+        LiveEdit merged = merge(next.offset, next.removedCharCount, next.addedCharacters, next.sequence);
+        return merged == null ? null : merged.timedAs(isTimed() ? this : next);
+    }
+
+    /** Merges a replacement made right after this edit, as {@link #mergeWith(LiveEdit)}, the sequence being kept. */
+    public LiveEdit mergeWith(int nextOffset, int nextRemovedCharCount, String nextAddedCharacters) {
+        return merge(nextOffset, nextRemovedCharCount, nextAddedCharacters, sequence);
+    }
+
+    private LiveEdit merge(int nextOffset, int nextRemovedCharCount, String nextAddedCharacters, int nextSequence) {
+        int end = offset + addedCharacters.length();
+        if (nextRemovedCharCount == 0 && nextOffset == end) {
+            /* typing after the added characters */
+            return new LiveEdit(peer, nextSequence, offset, removedCharCount, addedCharacters + nextAddedCharacters);
+        }
+        if (nextAddedCharacters.isEmpty() && nextOffset == end) {
+            /* forward delete right after them */
+            return new LiveEdit(peer, nextSequence, offset, removedCharCount + nextRemovedCharCount, addedCharacters);
+        }
+        if (nextAddedCharacters.isEmpty() && nextOffset + nextRemovedCharCount == end) {
+            /* backspace: eat the added characters first, then the characters before them */
+            int kept = addedCharacters.length() - nextRemovedCharCount;
+            if (kept >= 0) {
+                return new LiveEdit(peer, nextSequence, offset, removedCharCount, addedCharacters.substring(0, kept));
+            }
+            return new LiveEdit(peer, nextSequence, offset + kept, removedCharCount - kept, "");
+        }
+        return null;
+    }
+
+    private LiveEdit timedAs(LiveEdit edit) {
+        originTime = edit.originTime;
+        receivedTime = edit.receivedTime;
+        return this;
+    }
+
+    /** Id of the peer that made the edit. */
+    public String getPeer() {
+        return peer;
+    }
+
+    /** Per peer and per resource sequence number, starting at 1. 0 when sent by a client that does not number its edits. */
+    public int getSequence() {
+        return sequence;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getRemovedCharCount() {
+        return removedCharCount;
+    }
+
+    public String getAddedCharacters() {
+        return addedCharacters;
+    }
+
+    /** Whether the edit was stamped by its sender, see {@link LiveEditMetrics}. */
+    public boolean isTimed() {
+        return originTime > 0;
+    }
+
+    public double getOriginTime() {
+        return originTime;
+    }
+
+    public double getReceivedTime() {
+        return receivedTime;
+    }
+}
@@ -0,0 +1,505 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit;
+
+import org.eclipse.che.ide.api.preferences.PreferencesManager;
+import org.eclipse.che.ide.util.loging.Log;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Tunables of the live edit plugin, set with the IDE preferences. Durations are in milliseconds.
+ */
+@Singleton
+public class LiveEditConfiguration {
+
+    /** Which Flux channel the events of a live document travel on. */
+    public enum ChannelScope {
+        /** One channel shared by the whole workspace, as older clients do. */
+        WORKSPACE,
+        /** One channel per project. */
+        PROJECT,
+        /** One channel per resource: only the events of the opened documents are received. */
+        RESOURCE
+    }
+
+    /** Prefix of the IDE preferences setting the options. */
+    public static final String PREFERENCE_PREFIX = "liveedit.";
+
+    public static final int DEFAULT_EDIT_COALESCING_WINDOW    = 50;
+    public static final int DEFAULT_EDIT_COALESCING_MAX_CHARS = 256;
+    public static final int DEFAULT_CURSOR_UPDATES_PER_SECOND = 10;
+    public static final int DEFAULT_EDIT_HISTORY_SIZE         = 500;
+    public static final int DEFAULT_RESYNC_TIMEOUT            = 3000;
+    public static final int DEFAULT_CHECKSUM_INTERVAL         = 2000;
+    public static final int DEFAULT_REMOTE_APPLY_TICK         = 0;
+    public static final boolean DEFAULT_COMPACT_PROTOCOL      = false;
+    public static final int DEFAULT_CHUNK_SIZE                = 16 * 1024;
+    public static final int DEFAULT_COMPRESSION_THRESHOLD     = 4 * 1024;
+    public static final int DEFAULT_RECONNECT_BASE_DELAY      = 250;
+    public static final int DEFAULT_RECONNECT_MAX_DELAY       = 30000;
+    public static final int DEFAULT_MAX_RECONNECTION_ATTEMPTS = 10;
+    public static final int DEFAULT_CONNECT_TIMEOUT           = 10000;
+    public static final ChannelScope DEFAULT_CHANNEL_SCOPE    = ChannelScope.WORKSPACE;
+    public static final int DEFAULT_MAX_PEERS                 = 64;
+    public static final int DEFAULT_PEER_IDLE_TIMEOUT         = 10 * 60 * 1000;
+    public static final boolean DEFAULT_ANIMATED_CURSORS      = true;
+    public static final boolean DEFAULT_PERSIST_PEER_IDENTITY = false;
+    public static final boolean DEFAULT_METRICS_ENABLED       = false;
+    public static final int DEFAULT_LATENCY_SAMPLE_INTERVAL   = 1000;
+    public static final int DEFAULT_MAX_IN_FLIGHT_MESSAGES    = 32;
+    public static final int DEFAULT_ACK_TIMEOUT               = 5000;
+    public static final boolean DEFAULT_PERSIST_OFFLINE_EDITS = false;
+    public static final boolean DEFAULT_WORKER_CONNECTION     = false;
+    public static final int DEFAULT_WORKER_BATCH_WINDOW       = 16;
+    public static final int DEFAULT_EDITING_NOTIFICATION_REFRESH = 1000;
+    public static final int DEFAULT_EDITING_NOTIFICATION_TIMEOUT = 60 * 1000;
+    public static final int DEFAULT_SHADOW_BUFFER_BUDGET      = 4 * 1024 * 1024;
+    public static final boolean DEFAULT_SHARED_CONNECTION     = false;
+
+    private int editCoalescingWindow   = DEFAULT_EDIT_COALESCING_WINDOW;
+    private int editCoalescingMaxChars = DEFAULT_EDIT_COALESCING_MAX_CHARS;
+    private int cursorUpdatesPerSecond = DEFAULT_CURSOR_UPDATES_PER_SECOND;
+    private int editHistorySize        = DEFAULT_EDIT_HISTORY_SIZE;
+    private int resyncTimeout          = DEFAULT_RESYNC_TIMEOUT;
+    private int checksumInterval       = DEFAULT_CHECKSUM_INTERVAL;
+    private int remoteApplyTick        = DEFAULT_REMOTE_APPLY_TICK;
+    private boolean compactProtocol    = DEFAULT_COMPACT_PROTOCOL;
+    private int chunkSize              = DEFAULT_CHUNK_SIZE;
+    private int compressionThreshold   = DEFAULT_COMPRESSION_THRESHOLD;
+    private int reconnectBaseDelay     = DEFAULT_RECONNECT_BASE_DELAY;
+    private int reconnectMaxDelay      = DEFAULT_RECONNECT_MAX_DELAY;
+    private int maxReconnectionAttempts = DEFAULT_MAX_RECONNECTION_ATTEMPTS;
+    private int connectTimeout         = DEFAULT_CONNECT_TIMEOUT;
+    private ChannelScope channelScope  = DEFAULT_CHANNEL_SCOPE;
+    private int maxPeers               = DEFAULT_MAX_PEERS;
+    private int peerIdleTimeout        = DEFAULT_PEER_IDLE_TIMEOUT;
+    private boolean animatedCursors    = DEFAULT_ANIMATED_CURSORS;
+    private boolean persistPeerIdentity = DEFAULT_PERSIST_PEER_IDENTITY;
+    private boolean metricsEnabled     = DEFAULT_METRICS_ENABLED;
+    private int latencySampleInterval  = DEFAULT_LATENCY_SAMPLE_INTERVAL;
+    private int maxInFlightMessages    = DEFAULT_MAX_IN_FLIGHT_MESSAGES;
+    private int ackTimeout             = DEFAULT_ACK_TIMEOUT;
+    private boolean persistOfflineEdits = DEFAULT_PERSIST_OFFLINE_EDITS;
+    private boolean workerConnection   = DEFAULT_WORKER_CONNECTION;
+    private int workerBatchWindow      = DEFAULT_WORKER_BATCH_WINDOW;
+    private int editingNotificationRefresh = DEFAULT_EDITING_NOTIFICATION_REFRESH;
+    private int editingNotificationTimeout = DEFAULT_EDITING_NOTIFICATION_TIMEOUT;
+    private int shadowBufferBudget     = DEFAULT_SHADOW_BUFFER_BUDGET;
+    private boolean sharedConnection   = DEFAULT_SHARED_CONNECTION;
+
+    /** The defaults. */
+    public LiveEditConfiguration() {
+    }
+
+    /**
+     * Reads every option from the IDE preference named after it with the {@link #PREFERENCE_PREFIX}, e.g.
+     * {@code liveedit.channelScope=RESOURCE}, the default being kept if the preference is not set or invalid.
+     */
+    @Inject
+    public LiveEditConfiguration(PreferencesManager preferences) {
+        editCoalescingWindow = getInt(preferences, "editCoalescingWindow", editCoalescingWindow);
+        editCoalescingMaxChars = getInt(preferences, "editCoalescingMaxChars", editCoalescingMaxChars);
+        cursorUpdatesPerSecond = getInt(preferences, "cursorUpdatesPerSecond", cursorUpdatesPerSecond);
+        editHistorySize = getInt(preferences, "editHistorySize", editHistorySize);
+        resyncTimeout = getInt(preferences, "resyncTimeout", resyncTimeout);
+        checksumInterval = getInt(preferences, "checksumInterval", checksumInterval);
+        remoteApplyTick = getInt(preferences, "remoteApplyTick", remoteApplyTick);
+        compactProtocol = getBoolean(preferences, "compactProtocol", compactProtocol);
+        chunkSize = getInt(preferences, "chunkSize", chunkSize);
+        compressionThreshold = getInt(preferences, "compressionThreshold", compressionThreshold);
+        reconnectBaseDelay = getInt(preferences, "reconnectBaseDelay", reconnectBaseDelay);
+        reconnectMaxDelay = getInt(preferences, "reconnectMaxDelay", reconnectMaxDelay);
+        maxReconnectionAttempts = getInt(preferences, "maxReconnectionAttempts", maxReconnectionAttempts);
+        connectTimeout = getInt(preferences, "connectTimeout", connectTimeout);
+        channelScope = getChannelScope(preferences, "channelScope", channelScope);
+        maxPeers = getInt(preferences, "maxPeers", maxPeers);
+        peerIdleTimeout = getInt(preferences, "peerIdleTimeout", peerIdleTimeout);
+        animatedCursors = getBoolean(preferences, "animatedCursors", animatedCursors);
+        persistPeerIdentity = getBoolean(preferences, "persistPeerIdentity", persistPeerIdentity);
+        metricsEnabled = getBoolean(preferences, "metricsEnabled", metricsEnabled);
+        latencySampleInterval = getInt(preferences, "latencySampleInterval", latencySampleInterval);
+        maxInFlightMessages = getInt(preferences, "maxInFlightMessages", maxInFlightMessages);
+        ackTimeout = getInt(preferences, "ackTimeout", ackTimeout);
+        persistOfflineEdits = getBoolean(preferences, "persistOfflineEdits", persistOfflineEdits);
+        workerConnection = getBoolean(preferences, "workerConnection", workerConnection);
+        workerBatchWindow = getInt(preferences, "workerBatchWindow", workerBatchWindow);
+        editingNotificationRefresh = getInt(preferences, "editingNotificationRefresh", editingNotificationRefresh);
+        editingNotificationTimeout = getInt(preferences, "editingNotificationTimeout", editingNotificationTimeout);
+        shadowBufferBudget = getInt(preferences, "shadowBufferBudget", shadowBufferBudget);
+        sharedConnection = getBoolean(preferences, "sharedConnection", sharedConnection);
+    }
+
+    /** How long local edits are buffered before being sent. 0 sends every edit immediately. */
+    public int getEditCoalescingWindow() {
+        return editCoalescingWindow;
+    }
+
+    public LiveEditConfiguration withEditCoalescingWindow(int editCoalescingWindow) {
+        this.editCoalescingWindow = editCoalescingWindow;
+        return this;
+    }
+
+    /** Number of buffered added characters that forces a send before the window expires. */
+    public int getEditCoalescingMaxChars() {
+        return editCoalescingMaxChars;
+    }
+
+    public LiveEditConfiguration withEditCoalescingMaxChars(int editCoalescingMaxChars) {
+        this.editCoalescingMaxChars = editCoalescingMaxChars;
+        return this;
+    }
+
+    /** Maximum number of cursor broadcasts per second. 0 or less disables the rate limit. */
+    public int getCursorUpdatesPerSecond() {
+        return cursorUpdatesPerSecond;
+    }
+
+    public LiveEditConfiguration withCursorUpdatesPerSecond(int cursorUpdatesPerSecond) {
+        this.cursorUpdatesPerSecond = cursorUpdatesPerSecond;
+        return this;
+    }
+
+    /** Number of local edits per document kept to be replayed to peers that missed them. */
+    public int getEditHistorySize() {
+        return editHistorySize;
+    }
+
+    public LiveEditConfiguration withEditHistorySize(int editHistorySize) {
+        this.editHistorySize = editHistorySize;
+        return this;
+    }
+
+    /** How long to wait for a peer to replay missing edits before reloading the whole resource. */
+    public int getResyncTimeout() {
+        return resyncTimeout;
+    }
+
+    public LiveEditConfiguration withResyncTimeout(int resyncTimeout) {
+        this.resyncTimeout = resyncTimeout;
+        return this;
+    }
+
+    /** Minimum time between two document checksums piggybacked on sent edits. 0 or less disables divergence detection. */
+    public int getChecksumInterval() {
+        return checksumInterval;
+    }
+
+    public LiveEditConfiguration withChecksumInterval(int checksumInterval) {
+        this.checksumInterval = checksumInterval;
+        return this;
+    }
+
+    /** Delay between two applications of the queued remote edits. 0 or less applies them once per animation frame. */
+    public int getRemoteApplyTick() {
+        return remoteApplyTick;
+    }
+
+    public LiveEditConfiguration withRemoteApplyTick(int remoteApplyTick) {
+        this.remoteApplyTick = remoteApplyTick;
+        return this;
+    }
+
+    /** Whether the compact wire protocol is offered to the Flux server and the peers. */
+    public boolean isCompactProtocol() {
+        return compactProtocol;
+    }
+
+    public LiveEditConfiguration withCompactProtocol(boolean compactProtocol) {
+        this.compactProtocol = compactProtocol;
+        return this;
+    }
+
+    /**
+     * Maximum number of characters sent in one message: larger edits and snapshots are streamed in chunks.
+     * It also bounds the characters of remote edits applied per animation frame.
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public LiveEditConfiguration withChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    /** Size above which the characters sent are compressed, when the peers speak the compact protocol. 0 disables it. */
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    public LiveEditConfiguration withCompressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+        return this;
+    }
+
+    /** First delay before retrying to connect, doubled on every failed attempt. */
+    public int getReconnectBaseDelay() {
+        return reconnectBaseDelay;
+    }
+
+    public LiveEditConfiguration withReconnectBaseDelay(int reconnectBaseDelay) {
+        this.reconnectBaseDelay = reconnectBaseDelay;
+        return this;
+    }
+
+    /** Upper bound of the delay between two connection attempts. */
+    public int getReconnectMaxDelay() {
+        return reconnectMaxDelay;
+    }
+
+    public LiveEditConfiguration withReconnectMaxDelay(int reconnectMaxDelay) {
+        this.reconnectMaxDelay = reconnectMaxDelay;
+        return this;
+    }
+
+    /** Reconnections socket.io attempts by itself after a connection loss, before the url is resolved again. */
+    public int getMaxReconnectionAttempts() {
+        return maxReconnectionAttempts;
+    }
+
+    public LiveEditConfiguration withMaxReconnectionAttempts(int maxReconnectionAttempts) {
+        this.maxReconnectionAttempts = maxReconnectionAttempts;
+        return this;
+    }
+
+    /** How long a connection attempt may take before being given up and retried. */
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public LiveEditConfiguration withConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+        return this;
+    }
+
+    /**
+     * The channels the events travel on. Every peer of a session has to use the same scope: the clients that do not
+     * have the setting only use the workspace channel.
+     */
+    public ChannelScope getChannelScope() {
+        return channelScope;
+    }
+
+    public LiveEditConfiguration withChannelScope(ChannelScope channelScope) {
+        this.channelScope = channelScope;
+        return this;
+    }
+
+    /** Maximum number of peers remembered, the least recently seen one being evicted first. 0 means no limit. */
+    public int getMaxPeers() {
+        return maxPeers;
+    }
+
+    public LiveEditConfiguration withMaxPeers(int maxPeers) {
+        this.maxPeers = maxPeers;
+        return this;
+    }
+
+    /** How long a peer can stay silent before its cursors and state are dropped. 0 keeps it forever. */
+    public int getPeerIdleTimeout() {
+        return peerIdleTimeout;
+    }
+
+    public LiveEditConfiguration withPeerIdleTimeout(int peerIdleTimeout) {
+        this.peerIdleTimeout = peerIdleTimeout;
+        return this;
+    }
+
+    /** Whether the remote cursors blink. Static outlines spare the compositor when many peers are around. */
+    public boolean isAnimatedCursors() {
+        return animatedCursors;
+    }
+
+    public LiveEditConfiguration withAnimatedCursors(boolean animatedCursors) {
+        this.animatedCursors = animatedCursors;
+        return this;
+    }
+
+    /** Whether the identity of this IDE tab survives a reload of the page, see {@link CheFluxLiveEditExtension}. */
+    public boolean isPersistPeerIdentity() {
+        return persistPeerIdentity;
+    }
+
+    public LiveEditConfiguration withPersistPeerIdentity(boolean persistPeerIdentity) {
+        this.persistPeerIdentity = persistPeerIdentity;
+        return this;
+    }
+
+    /** Whether the messages, the text they carry and the time spent handling them are measured, see {@link LiveEditMetrics}. */
+    public boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    public LiveEditConfiguration withMetricsEnabled(boolean metricsEnabled) {
+        this.metricsEnabled = metricsEnabled;
+        return this;
+    }
+
+    /** How often a sent edit is timestamped to measure how long the peers take to apply it. 0 never does. */
+    public int getLatencySampleInterval() {
+        return latencySampleInterval;
+    }
+
+    public LiveEditConfiguration withLatencySampleInterval(int latencySampleInterval) {
+        this.latencySampleInterval = latencySampleInterval;
+        return this;
+    }
+
+    /** How many messages can await their acknowledgement, when the server acknowledges them. */
+    public int getMaxInFlightMessages() {
+        return maxInFlightMessages;
+    }
+
+    public LiveEditConfiguration withMaxInFlightMessages(int maxInFlightMessages) {
+        this.maxInFlightMessages = maxInFlightMessages;
+        return this;
+    }
+
+    /** How long without any acknowledgement before the messages in flight are considered delivered. */
+    public int getAckTimeout() {
+        return ackTimeout;
+    }
+
+    public LiveEditConfiguration withAckTimeout(int ackTimeout) {
+        this.ackTimeout = ackTimeout;
+        return this;
+    }
+
+    /**
+     * Whether the edits made while disconnected are also kept in the browser storage, to be restored if the IDE is
+     * reloaded before they could be sent, provided the resource has not changed in between.
+     */
+    public boolean isPersistOfflineEdits() {
+        return persistOfflineEdits;
+    }
+
+    public LiveEditConfiguration withPersistOfflineEdits(boolean persistOfflineEdits) {
+        this.persistOfflineEdits = persistOfflineEdits;
+        return this;
+    }
+
+    /**
+     * Whether the connection to Flux runs in a Web Worker, which parses and decompresses the incoming messages off
+     * the main thread. Falls back to the main thread when the browser has no workers.
+     */
+    public boolean isWorkerConnection() {
+        return workerConnection;
+    }
+
+    public LiveEditConfiguration withWorkerConnection(boolean workerConnection) {
+        this.workerConnection = workerConnection;
+        return this;
+    }
+
+    /** How long the worker gathers the incoming messages before handing them over to the main thread at once. */
+    public int getWorkerBatchWindow() {
+        return workerBatchWindow;
+    }
+
+    public LiveEditConfiguration withWorkerBatchWindow(int workerBatchWindow) {
+        this.workerBatchWindow = workerBatchWindow;
+        return this;
+    }
+
+    /** How often the notifications of the edits made to documents not opened here are updated. */
+    public int getEditingNotificationRefresh() {
+        return editingNotificationRefresh;
+    }
+
+    public LiveEditConfiguration withEditingNotificationRefresh(int editingNotificationRefresh) {
+        this.editingNotificationRefresh = editingNotificationRefresh;
+        return this;
+    }
+
+    /** How long without edits before such a notification is removed. */
+    public int getEditingNotificationTimeout() {
+        return editingNotificationTimeout;
+    }
+
+    public LiveEditConfiguration withEditingNotificationTimeout(int editingNotificationTimeout) {
+        this.editingNotificationTimeout = editingNotificationTimeout;
+        return this;
+    }
+
+    /**
+     * How many characters the closed live documents kept up to date with the peers' edits may hold in total, the
+     * least recently edited being dropped first. 0 drops them as soon as they are closed.
+     */
+    public int getShadowBufferBudget() {
+        return shadowBufferBudget;
+    }
+
+    public LiveEditConfiguration withShadowBufferBudget(int shadowBufferBudget) {
+        this.shadowBufferBudget = shadowBufferBudget;
+        return this;
+    }
+
+    /**
+     * Whether the tabs of the browser connected to the same Flux server share one connection, opened by one of them
+     * and handed over to another when it is closed. Ignored when the browser cannot share it.
+     */
+    public boolean isSharedConnection() {
+        return sharedConnection;
+    }
+
+    public LiveEditConfiguration withSharedConnection(boolean sharedConnection) {
+        this.sharedConnection = sharedConnection;
+        return this;
+    }
+
+    private static int getInt(PreferencesManager preferences, String name, int defaultValue) {
+        String value = getPreference(preferences, name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return invalid(name, value, defaultValue);
+        }
+    }
+
+    private static boolean getBoolean(PreferencesManager preferences, String name, boolean defaultValue) {
+        String value = getPreference(preferences, name);
+        if (value == null) {
+            return defaultValue;
+        }
+        if ("true".equalsIgnoreCase(value) || "false".equalsIgnoreCase(value)) {
+            return Boolean.parseBoolean(value);
+        }
+        return invalid(name, value, defaultValue);
+    }
+
+    private static ChannelScope getChannelScope(PreferencesManager preferences, String name, ChannelScope defaultValue) {
+        String value = getPreference(preferences, name);
+        if (value == null) {
+            return defaultValue;
+        }
+        for (ChannelScope channelScope : ChannelScope.values()) {
+            if (channelScope.name().equalsIgnoreCase(value)) {
+                return channelScope;
+            }
+        }
+        return invalid(name, value, defaultValue);
+    }
+
+    private static String getPreference(PreferencesManager preferences, String name) {
+        String value = preferences.getValue(PREFERENCE_PREFIX + name);
+        return value == null || value.trim().isEmpty() ? null : value.trim();
+    }
+
+    private static <T> T invalid(String name, String value, T defaultValue) {
+        Log.info(LiveEditConfiguration.class, "invalid value " + value + " for " + PREFERENCE_PREFIX + name + ", using " + defaultValue);
+        return defaultValue;
+    }
+}
@@ -0,0 +1,274 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.eclipse.che.ide.socketio.Message;
+import org.eclipse.che.ide.socketio.OutboundQueue;
+import org.eclipse.che.ide.util.loging.Log;
+
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.json.client.JSONNumber;
+import com.google.gwt.json.client.JSONObject;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Measures of the live edit plugin. Durations are in milliseconds.
+ * <p>
+ * The sizes of the messages sent are the characters of text they carry, as sent (compressed or not): the messages
+ * are not encoded again just to be measured. The edit latency is measured on sampled edits: the
+ * sender stamps the edit with its own clock, the peer that applies it echoes the stamp back with the time the edit
+ * waited before being applied, and the sender compares the stamp with its clock again, so the clocks of the peers
+ * never need to agree.
+ */
+@Singleton
+public class LiveEditMetrics {
+    private final LiveEditConfiguration       configuration;
+    private final Map<String, Double>         startupTimings   = new LinkedHashMap<String, Double>();
+    private final Map<String, MessageMeasure> sentMessages     = new TreeMap<String, MessageMeasure>();
+    private final Map<String, MessageMeasure> receivedMessages = new TreeMap<String, MessageMeasure>();
+    /* local send → peer apply → echo received */
+    private final Measure                     roundTrips       = new Measure();
+    /* the part of the round trips the edits spent queued at the peers */
+    private final Measure                     peerApplyDelays  = new Measure();
+    /* remote edit receipt → applied here */
+    private final Measure                     applyDelays      = new Measure();
+    private final Measure                     applyBatches     = new Measure();
+    private int                               liveDocumentCount;
+    private int                               handlerCount;
+    private double                            lastLatencySample;
+    private OutboundQueue                     outboundQueue;
+
+    @Inject
+    public LiveEditMetrics(LiveEditConfiguration configuration) {
+        this.configuration = configuration;
+        export();
+    }
+
+    /** A clock with sub-millisecond precision when the browser has one. */
+    public static native double now() /*-{
+        return $wnd.performance && $wnd.performance.now ? $wnd.performance.now() : Date.now();
+    }-*/;
+
+    public boolean isEnabled() {
+        return configuration.isMetricsEnabled();
+    }
+
+    /** Records the time a startup phase took, e.g. what the plugin adds to the IDE boot. */
+    public void recordStartup(String phase, double duration) {
+        startupTimings.put(phase, duration);
+        Log.info(LiveEditMetrics.class, "live edit " + phase + ": " + Math.round(duration) + " ms");
+    }
+
+    public Map<String, Double> getStartupTimings() {
+        return startupTimings;
+    }
+
+    /** Records how many documents are live and how many handlers they registered, after one is opened or closed. */
+    public void recordLiveDocuments(int liveDocumentCount, int handlerCount) {
+        this.liveDocumentCount = liveDocumentCount;
+        this.handlerCount = handlerCount;
+    }
+
+    public int getLiveDocumentCount() {
+        return liveDocumentCount;
+    }
+
+    public int getHandlerCount() {
+        return handlerCount;
+    }
+
+    /** The queue whose depth and superseded messages are reported. */
+    public void setOutboundQueue(OutboundQueue outboundQueue) {
+        this.outboundQueue = outboundQueue;
+    }
+
+    public void recordSent(Message message) {
+        if (isEnabled()) {
+            getMeasure(sentMessages, message.getType()).add(message.getTextLength(), 0);
+        }
+    }
+
+    /** Records a received message and the time its handler took. */
+    public void recordReceived(String type, double handlingTime) {
+        if (isEnabled()) {
+            getMeasure(receivedMessages, type).add(0, handlingTime);
+        }
+    }
+
+    /** Records the time taken to apply a batch of remote edits to a document. */
+    public void recordRemoteApply(double duration) {
+        if (isEnabled()) {
+            applyBatches.add(duration);
+        }
+    }
+
+    /** Records how long a sampled remote edit waited between its receipt and its application. */
+    public void recordApplyDelay(double delay) {
+        if (isEnabled()) {
+            applyDelays.add(delay);
+        }
+    }
+
+    /** Records the echo of a sampled edit: the time since we sent it and how long the peer took to apply it. */
+    public void recordRoundTrip(double roundTrip, double peerApplyDelay) {
+        if (isEnabled()) {
+            roundTrips.add(roundTrip);
+            peerApplyDelays.add(peerApplyDelay);
+        }
+    }
+
+    /** Whether the edit sent now is to be stamped for the latency measures. */
+    public boolean isLatencySampleDue() {
+        if (!isEnabled() || configuration.getLatencySampleInterval() <= 0) {
+            return false;
+        }
+        double time = now();
+        if (lastLatencySample > 0 && time - lastLatencySample < configuration.getLatencySampleInterval()) {
+            return false;
+        }
+        lastLatencySample = time;
+        return true;
+    }
+
+    public void reset() {
+        sentMessages.clear();
+        receivedMessages.clear();
+        roundTrips.clear();
+        peerApplyDelays.clear();
+        applyDelays.clear();
+        applyBatches.clear();
+    }
+
+    public String toJson() {
+        JSONObject json = new JSONObject();
+        JSONObject startup = new JSONObject();
+        for (Map.Entry<String, Double> timing : startupTimings.entrySet()) {
+            startup.put(timing.getKey(), new JSONNumber(timing.getValue()));
+        }
+        json.put("startup", startup);
+        json.put("liveDocuments", new JSONNumber(liveDocumentCount));
+        json.put("handlers", new JSONNumber(handlerCount));
+        json.put("sent", toJson(sentMessages, true));
+        json.put("received", toJson(receivedMessages, false));
+        if (outboundQueue != null) {
+            JSONObject queue = new JSONObject();
+            queue.put("depth", new JSONNumber(outboundQueue.getDepth()));
+            queue.put("maxDepth", new JSONNumber(outboundQueue.getMaxDepth()));
+            queue.put("inFlight", new JSONNumber(outboundQueue.getInFlight()));
+            queue.put("superseded", new JSONNumber(outboundQueue.getSupersededCount()));
+            json.put("outboundQueue", queue);
+        }
+        json.put("editRoundTrip", roundTrips.toJson());
+        json.put("peerApplyDelay", peerApplyDelays.toJson());
+        json.put("applyDelay", applyDelays.toJson());
+        json.put("applyBatch", applyBatches.toJson());
+        return stringify(json.getJavaScriptObject());
+    }
+
+    private static JSONObject toJson(Map<String, MessageMeasure> measures, boolean sent) {
+        JSONObject json = new JSONObject();
+        for (Map.Entry<String, MessageMeasure> measure : measures.entrySet()) {
+            json.put(measure.getKey(), measure.getValue().toJson(sent));
+        }
+        return json;
+    }
+
+    private static MessageMeasure getMeasure(Map<String, MessageMeasure> measures, String type) {
+        MessageMeasure measure = measures.get(type);
+        if (measure == null) {
+            measure = new MessageMeasure();
+            measures.put(type, measure);
+        }
+        return measure;
+    }
+
+    private static native String stringify(JavaScriptObject json) /*-{
+        return JSON.stringify(json, null, 2);
+    }-*/;
+
+    /** Lets the measures be exported from the browser console or by a test driver: cheLiveEditMetrics(). */
+    private native void export() /*-{
+        var metrics = this;
+        $wnd.cheLiveEditMetrics = $entry(function() {
+            return metrics.@org.eclipse.che.ide.flux.liveedit.LiveEditMetrics::toJson()();
+        });
+    }-*/;
+
+    private static class MessageMeasure {
+        private int           count;
+        private double        size;
+        private int           maxSize;
+        private final Measure handlingTimes = new Measure();
+
+        void add(int size, double handlingTime) {
+            count++;
+            this.size += size;
+            maxSize = Math.max(maxSize, size);
+            handlingTimes.add(handlingTime);
+        }
+
+        /* the sent messages are measured by the text they carry, the received ones by the time spent handling them */
+        JSONObject toJson(boolean sent) {
+            JSONObject json = new JSONObject();
+            json.put("count", new JSONNumber(count));
+            if (sent) {
+                json.put("size", new JSONNumber(size));
+                json.put("maxSize", new JSONNumber(maxSize));
+            } else {
+                json.put("handlingTime", handlingTimes.toJson());
+            }
+            return json;
+        }
+    }
+
+    /** Count, mean and maximum of a value, with the percentiles of its last samples. */
+    private static class Measure {
+        private static final int SAMPLES = 256;
+
+        private final double[] samples = new double[SAMPLES];
+        private int            count;
+        private double         total;
+        private double         max;
+
+        void add(double value) {
+            samples[count % SAMPLES] = value;
+            count++;
+            total += value;
+            max = Math.max(max, value);
+        }
+
+        void clear() {
+            count = 0;
+            total = 0;
+            max = 0;
+        }
+
+        JSONObject toJson() {
+            JSONObject json = new JSONObject();
+            json.put("count", new JSONNumber(count));
+            if (count > 0) {
+                double[] sorted = Arrays.copyOf(samples, Math.min(count, SAMPLES));
+                Arrays.sort(sorted);
+                json.put("mean", new JSONNumber(total / count));
+                json.put("p50", new JSONNumber(sorted[sorted.length / 2]));
+                json.put("p95", new JSONNumber(sorted[(int)(sorted.length * 0.95)]));
+                json.put("max", new JSONNumber(max));
+            }
+            return json;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit;
+
+import org.eclipse.che.ide.api.action.Action;
+import org.eclipse.che.ide.api.action.ActionEvent;
+import org.eclipse.che.ide.api.dialogs.DialogFactory;
+
+import com.google.gwt.user.client.ui.TextArea;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Shows the measures of the live edit session as JSON, ready to be copied into a bug report.
+ */
+@Singleton
+public class LiveEditMetricsAction extends Action {
+    private final LiveEditMetrics metrics;
+    private final DialogFactory   dialogFactory;
+
+    @Inject
+    public LiveEditMetricsAction(LiveEditMetrics metrics, DialogFactory dialogFactory) {
+        super("Live Edit Metrics", "Show the messages, sizes and latencies measured during the live edit session");
+        this.metrics = metrics;
+        this.dialogFactory = dialogFactory;
+    }
+
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        TextArea json = new TextArea();
+        json.setReadOnly(true);
+        json.setCharacterWidth(80);
+        json.setVisibleLines(30);
+        json.setText(metrics.toJson());
+        dialogFactory.createMessageDialog("Live Edit Metrics", json, null).show();
+    }
+}
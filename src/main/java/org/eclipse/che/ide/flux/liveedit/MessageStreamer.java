@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.eclipse.che.ide.socketio.Message;
+
+import com.google.gwt.user.client.Timer;
+
+/**
+ * Emits the outgoing messages in order, the chunks of a large payload being emitted one per tick so that the
+ * browser can render and the socket drain in between. Messages sent while chunks are pending wait behind them.
+ */
+public class MessageStreamer {
+
+    public interface Sender {
+        void send(Message message);
+    }
+
+    private final Sender              sender;
+    private final LinkedList<Message> pendingMessages = new LinkedList<Message>();
+    private final Timer               tickTimer       = new Timer() {
+        @Override
+        public void run() {
+            sender.send(pendingMessages.removeFirst());
+            if (!pendingMessages.isEmpty()) {
+                schedule(0);
+            }
+        }
+    };
+
+    public MessageStreamer(Sender sender) {
+        this.sender = sender;
+    }
+
+    public void send(Message message) {
+        if (pendingMessages.isEmpty()) {
+            sender.send(message);
+        } else {
+            pendingMessages.add(message);
+        }
+    }
+
+    /** Sends the first chunk now and the following ones on the next ticks. */
+    public void stream(List<Message> chunks) {
+        if (chunks.isEmpty()) {
+            return;
+        }
+        boolean idle = pendingMessages.isEmpty();
+        pendingMessages.addAll(chunks);
+        if (idle) {
+            sender.send(pendingMessages.removeFirst());
+        }
+        if (!pendingMessages.isEmpty() && !tickTimer.isRunning()) {
+            tickTimer.schedule(0);
+        }
+    }
+
+    public boolean isStreaming() {
+        return !pendingMessages.isEmpty();
+    }
+}
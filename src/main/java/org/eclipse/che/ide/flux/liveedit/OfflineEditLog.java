@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.core.client.JsonUtils;
+
+/**
+ * The local edits of a live document made while disconnected, to be sent once connected again.
+ * <p>
+ * Contiguous edits are merged as they are logged. The edits the peers made in the meantime are rebased on the log
+ * before being applied, and the log on them, so that the replayed edits land where they were made on the peers'
+ * documents too. When a remote edit overlaps the logged ones, our content wins: the remote edit is dropped and the
+ * peer is sent a snapshot after the replay.
+ */
+public class OfflineEditLog {
+    private final List<LiveEdit> edits         = new ArrayList<LiveEdit>();
+    private final Set<String>    conflictPeers = new LinkedHashSet<String>();
+    private int                  baseChecksum;
+
+    public boolean isEmpty() {
+        return edits.isEmpty();
+    }
+
+    /** Logs an edit, the checksum of the document before the first one being kept to validate a restored log. */
+    public void add(LiveEdit edit, int checksum) {
+        if (edits.isEmpty()) {
+            baseChecksum = checksum;
+            edits.add(edit);
+            return;
+        }
+        LiveEdit merged = edits.get(edits.size() - 1).mergeWith(edit);
+        if (merged != null) {
+            edits.set(edits.size() - 1, merged);
+        } else {
+            edits.add(edit);
+        }
+    }
+
+    public List<LiveEdit> getEdits() {
+        return edits;
+    }
+
+    public int getBaseChecksum() {
+        return baseChecksum;
+    }
+
+    /**
+     * Transforms a remote edit made without knowledge of the logged edits so that it applies after them, and the
+     * logged edits so that they apply after it. Returns null if they overlap, the peer then being marked in conflict.
+     */
+    public LiveEdit rebase(LiveEdit remote) {
+        List<LiveEdit> rebased = new ArrayList<LiveEdit>(edits.size());
+        for (LiveEdit local : edits) {
+            int remoteShift = remote.getAddedCharacters().length() - remote.getRemovedCharCount();
+            int localShift = local.getAddedCharacters().length() - local.getRemovedCharCount();
+            if (remote.getOffset() + remote.getRemovedCharCount() <= local.getOffset()) {
+                /* before the local edit, or at the same place: the remote characters come first */
+                rebased.add(local.withOffset(local.getOffset() + remoteShift));
+            } else if (local.getOffset() + local.getRemovedCharCount() <= remote.getOffset()) {
+                rebased.add(local);
+                remote = remote.withOffset(remote.getOffset() + localShift);
+            } else {
+                conflictPeers.add(remote.getPeer());
+                return null;
+            }
+        }
+        edits.clear();
+        edits.addAll(rebased);
+        return remote;
+    }
+
+    /** Marks a peer whose edits could not be rebased: it is sent our content once the log is replayed. */
+    public void addConflict(String peer) {
+        conflictPeers.add(peer);
+    }
+
+    public Set<String> getConflictPeers() {
+        return conflictPeers;
+    }
+
+    public void clear() {
+        edits.clear();
+        conflictPeers.clear();
+    }
+
+    /** Serializes the edits and the base checksum, for the browser storage. */
+    public String toJson() {
+        JavaScriptObject json = createLog(baseChecksum);
+        for (LiveEdit edit : edits) {
+            addEdit(json, edit.getOffset(), edit.getRemovedCharCount(), edit.getAddedCharacters());
+        }
+        return JsonUtils.stringify(json);
+    }
+
+    /** Restores a log serialized by {@link #toJson()}, whose edits were made by the given peer. */
+    public void restore(String json, String peer) {
+        clear();
+        JavaScriptObject log = JsonUtils.safeEval(json);
+        baseChecksum = getBase(log);
+        for (int i = 0; i < getEditCount(log); i++) {
+            edits.add(new LiveEdit(peer, 0, getOffset(log, i), getRemovedCharCount(log, i), getAddedCharacters(log, i)));
+        }
+    }
+
+    private static native JavaScriptObject createLog(int baseChecksum) /*-{
+        return {
+            "base": baseChecksum,
+            "edits": []
+        };
+    }-*/;
+
+    private static native void addEdit(JavaScriptObject log, int offset, int removedCharCount, String addedCharacters) /*-{
+        log.edits.push([offset, removedCharCount, addedCharacters]);
+    }-*/;
+
+    private static native int getBase(JavaScriptObject log) /*-{
+        return log.base | 0;
+    }-*/;
+
+    private static native int getEditCount(JavaScriptObject log) /*-{
+        return log.edits ? log.edits.length : 0;
+    }-*/;
+
+    private static native int getOffset(JavaScriptObject log, int i) /*-{
+        return log.edits[i][0];
+    }-*/;
+
+    private static native int getRemovedCharCount(JavaScriptObject log, int i) /*-{
+        return log.edits[i][1];
+    }-*/;
+
+    private static native String getAddedCharacters(JavaScriptObject log, int i) /*-{
+        return log.edits[i][2];
+    }-*/;
+}
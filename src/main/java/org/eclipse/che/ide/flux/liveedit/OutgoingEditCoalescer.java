@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit;
+
+import org.eclipse.che.ide.api.editor.document.Document;
+
+import com.google.gwt.user.client.Timer;
+
+/**
+ * Merges adjacent local inserts and deletes on the same document into a single edit
+ * (offset, removedCharCount, addedCharacters) so that typing does not send one message per keystroke.
+ * <p>
+ * The pending edit is flushed when the coalescing window expires, when the size cap is reached,
+ * when a non-contiguous edit or an edit on another document comes in, or when {@link #flush()} is called
+ * explicitly (cursor jump, remote edit about to be applied). The edits are merged as {@link LiveEdit#mergeWith(LiveEdit)}
+ * merges them.
+ */
+public class OutgoingEditCoalescer {
+
+    public interface FlushHandler {
+        void onFlush(Document document, int offset, int removedCharCount, String addedCharacters);
+    }
+
+    private final LiveEditConfiguration configuration;
+    private final FlushHandler          flushHandler;
+    private final Timer                 flushTimer      = new Timer() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    private Document document;
+    private LiveEdit pending;
+
+    public OutgoingEditCoalescer(LiveEditConfiguration configuration, FlushHandler flushHandler) {
+        this.configuration = configuration;
+        this.flushHandler = flushHandler;
+    }
+
+    public void add(Document document, int offset, int removedCharCount, String text) {
+        String added = text == null ? "" : text;
+        LiveEdit merged = this.document == document ? pending.mergeWith(offset, removedCharCount, added) : null;
+        if (merged != null) {
+            pending = merged;
+        } else {
+            flush();
+            this.document = document;
+            this.pending = new LiveEdit(null, 0, offset, removedCharCount, added);
+            scheduleFlush(Math.max(configuration.getEditCoalescingWindow(), 1));
+        }
+        if (configuration.getEditCoalescingWindow() <= 0
+            || pending.getAddedCharacters().length() >= configuration.getEditCoalescingMaxChars()) {
+            flush();
+        }
+    }
+
+    public void flush() {
+        flushTimer.cancel();
+        if (document == null) {
+            return;
+        }
+        Document flushedDocument = document;
+        LiveEdit flushed = pending;
+
+        document = null;
+        pending = null;
+
+        if (flushed.getRemovedCharCount() == 0 && flushed.getAddedCharacters().isEmpty()) {
+            return;
+        }
+        flushHandler.onFlush(flushedDocument, flushed.getOffset(), flushed.getRemovedCharCount(), flushed.getAddedCharacters());
+    }
+
+    /** Flushes the pending edit once the coalescing window expires. */
+    protected void scheduleFlush(int delay) {
+        flushTimer.schedule(delay);
+    }
+
+    public boolean isPending(Document document) {
+        return this.document != null && this.document == document;
+    }
+
+    /** Whether the given offset is where the pending edit leaves the cursor, i.e. the user is still typing. */
+    public boolean isAtPendingEnd(Document document, int offset) {
+        return isPending(document) && offset == pending.getOffset() + pending.getAddedCharacters().length();
+    }
+}
@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.gwt.core.client.Duration;
+import com.google.gwt.dom.client.StyleInjector;
+import com.google.gwt.user.client.Timer;
+
+/**
+ * The peers seen recently, each with the style its cursor is displayed with.
+ * <p>
+ * The registry is bounded: a peer idle for longer than the configured timeout, or the least recently seen one when
+ * there are too many, is evicted and its style reused. Styles are generated on demand, so any number of peers can
+ * be told apart, and only blink when the animated rendering is enabled.
+ */
+public class PeerRegistry {
+    public static final String STYLE_PREFIX = "pairProgramminigUser";
+
+    private static final String[] PALETTE = {"#f3ff20", "#10ff22", "#00a1ff", "#ff00fb", "#10fdff"};
+
+    public interface EvictionHandler {
+        void onEvicted(String peer);
+    }
+
+    private final LiveEditConfiguration configuration;
+    private final EvictionHandler       evictionHandler;
+    /* in access order: the least recently seen peers come first */
+    private final LinkedHashMap<String, Peer> peers          = new LinkedHashMap<String, Peer>(16, 0.75f, true);
+    private final Set<Integer>                usedStyles     = new HashSet<Integer>();
+    private final Set<Integer>                injectedStyles = new HashSet<Integer>();
+    private final Timer                       idleTimer      = new Timer() {
+        @Override
+        public void run() {
+            evictIdlePeers();
+        }
+    };
+    private boolean keyframesInjected;
+
+    public PeerRegistry(LiveEditConfiguration configuration, EvictionHandler evictionHandler) {
+        this.configuration = configuration;
+        this.evictionHandler = evictionHandler;
+    }
+
+    /** Records some activity of the peer and returns the index of its style, assigned the first time it is seen. */
+    public int touch(String peer) {
+        Peer known = peers.get(peer);
+        if (known == null) {
+            if (configuration.getMaxPeers() > 0 && peers.size() >= configuration.getMaxPeers()) {
+                evict(peers.keySet().iterator().next());
+            }
+            known = new Peer(nextFreeStyle());
+            peers.put(peer, known);
+            injectStyle(known.style);
+        }
+        known.lastSeen = Duration.currentTimeMillis();
+        if (!idleTimer.isRunning() && configuration.getPeerIdleTimeout() > 0) {
+            idleTimer.schedule(configuration.getPeerIdleTimeout());
+        }
+        return known.style;
+    }
+
+    /** Forgets a peer right away, e.g. when it announced it left. */
+    public void remove(String peer) {
+        if (peers.containsKey(peer)) {
+            evict(peer);
+        }
+    }
+
+    public int size() {
+        return peers.size();
+    }
+
+    public static String getStyleName(int style) {
+        return STYLE_PREFIX + style;
+    }
+
+    private void evictIdlePeers() {
+        double idleSince = Duration.currentTimeMillis() - configuration.getPeerIdleTimeout();
+        Iterator<Map.Entry<String, Peer>> iterator = peers.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Peer> peer = iterator.next();
+            if (peer.getValue().lastSeen > idleSince) {
+                /* the next ones have been seen even more recently */
+                idleTimer.schedule((int)(peer.getValue().lastSeen - idleSince) + 1);
+                return;
+            }
+            iterator.remove();
+            usedStyles.remove(peer.getValue().style);
+            evictionHandler.onEvicted(peer.getKey());
+        }
+    }
+
+    private void evict(String peer) {
+        Peer evicted = peers.remove(peer);
+        usedStyles.remove(evicted.style);
+        evictionHandler.onEvicted(peer);
+    }
+
+    private int nextFreeStyle() {
+        int style = 1;
+        while (usedStyles.contains(style)) {
+            style++;
+        }
+        usedStyles.add(style);
+        return style;
+    }
+
+    private void injectStyle(int style) {
+        if (!injectedStyles.add(style)) {
+            return;
+        }
+        String outline = "outline: 1px solid " + getColour(style) + ";";
+        if (configuration.isAnimatedCursors()) {
+            if (!keyframesInjected) {
+                StyleInjector.inject("@keyframes blinker { 50% { opacity: 0.0; }}");
+                keyframesInjected = true;
+            }
+            StyleInjector.inject("." + getStyleName(style) + " { " + outline + " animation: blinker 1s linear infinite;}");
+        } else {
+            StyleInjector.inject("." + getStyleName(style) + " { " + outline + "}");
+        }
+    }
+
+    /** The historical colours first, then hues spread by the golden angle so that close indexes look different. */
+    private static String getColour(int style) {
+        if (style <= PALETTE.length) {
+            return PALETTE[style - 1];
+        }
+        int hue = (int)((style * 137.508) % 360);
+        return "hsl(" + hue + ", 100%, 50%)";
+    }
+
+    private static class Peer {
+        private final int style;
+        private double    lastSeen;
+
+        Peer(int style) {
+            this.style = style;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A text edited without copying it: the text is a sequence of pieces of the original text and of an append-only
+ * buffer holding every added character. Once there are too many pieces, or the buffers hold too many characters no
+ * longer in the text, the text is copied into a new original.
+ */
+public class PieceTable implements DocumentChecksum.Text {
+    private static final int MAX_PIECES = 512;
+
+    private final List<Piece>   pieces = new ArrayList<Piece>();
+    private final StringBuilder added  = new StringBuilder();
+    private String              original;
+    private int                 length;
+
+    public PieceTable(String text) {
+        reset(text);
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    /** Number of characters held, those of the text and those added or removed since it was last compacted. */
+    public int getSize() {
+        return original.length() + added.length();
+    }
+
+    public void replace(int offset, int removedCharCount, String addedCharacters) {
+        offset = Math.max(0, Math.min(offset, length));
+        removedCharCount = Math.max(0, Math.min(removedCharCount, length - offset));
+        int first = split(offset);
+        int last = split(offset + removedCharCount);
+        pieces.subList(first, last).clear();
+        if (!addedCharacters.isEmpty()) {
+            pieces.add(first, new Piece(false, added.length(), addedCharacters.length()));
+            added.append(addedCharacters);
+        }
+        length += addedCharacters.length() - removedCharCount;
+        if (pieces.size() > MAX_PIECES || getSize() > 2 * length + 1024) {
+            reset(getText());
+        }
+    }
+
+    public String getText() {
+        StringBuilder text = new StringBuilder(length);
+        for (Piece piece : pieces) {
+            if (piece.original) {
+                text.append(original, piece.start, piece.start + piece.length);
+            } else {
+                text.append(added, piece.start, piece.start + piece.length);
+            }
+        }
+        return text.toString();
+    }
+
+    /** The characters from start to end, reading only the pieces holding them. */
+    @Override
+    public String getText(int start, int end) {
+        StringBuilder text = new StringBuilder(Math.max(0, end - start));
+        int pieceOffset = 0;
+        for (Piece piece : pieces) {
+            int from = Math.max(start, pieceOffset);
+            int to = Math.min(end, pieceOffset + piece.length);
+            if (from < to) {
+                int pieceStart = piece.start + from - pieceOffset;
+                text.append(piece.original ? original : added, pieceStart, pieceStart + to - from);
+            }
+            pieceOffset += piece.length;
+            if (pieceOffset >= end) {
+                break;
+            }
+        }
+        return text.toString();
+    }
+
+    private void reset(String text) {
+        original = text;
+        added.setLength(0);
+        pieces.clear();
+        if (!text.isEmpty()) {
+            pieces.add(new Piece(true, 0, text.length()));
+        }
+        length = text.length();
+    }
+
+    /** Returns the index of the piece starting at the offset, splitting the piece it falls in if needed. */
+    private int split(int offset) {
+        int pieceOffset = 0;
+        for (int i = 0; i < pieces.size(); i++) {
+            Piece piece = pieces.get(i);
+            if (offset == pieceOffset) {
+                return i;
+            }
+            if (offset < pieceOffset + piece.length) {
+                int head = offset - pieceOffset;
+                pieces.set(i, new Piece(piece.original, piece.start, head));
+                pieces.add(i + 1, new Piece(piece.original, piece.start + head, piece.length - head));
+                return i + 1;
+            }
+            pieceOffset += piece.length;
+        }
+        return pieces.size();
+    }
+
+    private static class Piece {
+        private final boolean original;
+        private final int     start;
+        private final int     length;
+
+        Piece(boolean original, int start, int length) {
+            this.original = original;
+            this.start = start;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.che.ide.api.editor.position.PositionConverter;
+import org.eclipse.che.ide.api.editor.text.TextPosition;
+import org.eclipse.che.ide.api.editor.text.TextRange;
+import org.eclipse.che.ide.api.editor.texteditor.TextEditorPresenter;
+
+import com.google.gwt.animation.client.AnimationScheduler;
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.user.client.ui.Widget;
+
+/**
+ * Displays the remote cursors. Moving a cursor only records where it should be; the markers are reconciled once
+ * per animation frame, a marker being redrawn only if its position or its style changed. Cursors outside of the
+ * editor's viewport are not displayed until the user scrolls to them.
+ */
+public class RemoteCursorRenderer {
+
+    private final Set<LiveDocument>                   dirtyDocuments     = new LinkedHashSet<LiveDocument>();
+    private final Set<LiveDocument>                   offscreenDocuments = new LinkedHashSet<LiveDocument>();
+    private final Map<LiveDocument, Element>          scrolledElements   = new HashMap<LiveDocument, Element>();
+    private final Map<LiveDocument, JavaScriptObject> scrollListeners    = new HashMap<LiveDocument, JavaScriptObject>();
+    private boolean                                   scheduled;
+
+    public void moveCursor(LiveDocument liveDocument, CursorHandlerForPairProgramming remoteCursor, int offset) {
+        remoteCursor.setDesiredOffset(offset);
+        invalidate(liveDocument);
+    }
+
+    /** Schedules the reconciliation of the document's markers, e.g. after its editor has been opened again. */
+    public void invalidate(LiveDocument liveDocument) {
+        dirtyDocuments.add(liveDocument);
+        if (scheduled) {
+            return;
+        }
+        scheduled = true;
+        AnimationScheduler.get().requestAnimationFrame(new AnimationScheduler.AnimationCallback() {
+            @Override
+            public void execute(double timestamp) {
+                render();
+            }
+        });
+    }
+
+    /** Drops the document from the pending reconciliations, once it has been closed. */
+    public void forget(LiveDocument liveDocument) {
+        dirtyDocuments.remove(liveDocument);
+        offscreenDocuments.remove(liveDocument);
+        unlistenToScroll(liveDocument);
+    }
+
+    /** Called when the editor of the document scrolled: the cursors it did not display may now be in view. */
+    private void scrolled(LiveDocument liveDocument) {
+        if (offscreenDocuments.contains(liveDocument)) {
+            invalidate(liveDocument);
+        }
+    }
+
+    private void render() {
+        scheduled = false;
+        List<LiveDocument> documents = new ArrayList<LiveDocument>(dirtyDocuments);
+        dirtyDocuments.clear();
+        for (LiveDocument liveDocument : documents) {
+            render(liveDocument);
+        }
+    }
+
+    private void render(LiveDocument liveDocument) {
+        offscreenDocuments.remove(liveDocument);
+        TextEditorPresenter textEditor = liveDocument.getTextEditor();
+        if (textEditor == null) {
+            return;
+        }
+        Widget editorWidget = textEditor.getEditorWidget().asWidget();
+        listenToScroll(liveDocument, editorWidget.getElement());
+        /* the viewport and the cursors in page coordinates, the converter giving the bottom of the cursor's line */
+        int viewportTop = editorWidget.getAbsoluteTop();
+        int viewportBottom = viewportTop + editorWidget.getOffsetHeight();
+        PositionConverter positionConverter = textEditor.getPositionConverter();
+        for (CursorHandlerForPairProgramming remoteCursor : liveDocument.getRemoteCursors()) {
+            int offset = remoteCursor.getDesiredOffset();
+            String style = PeerRegistry.getStyleName(remoteCursor.getUserId());
+            if (offset < 0 || offset == remoteCursor.getRenderedOffset() && style.equals(remoteCursor.getRenderedStyle())) {
+                continue;
+            }
+            if (remoteCursor.getMarkerRegistration() != null) {
+                remoteCursor.clearMark();
+                remoteCursor.setMarkerRegistration(null);
+                remoteCursor.setRenderedOffset(-1);
+                remoteCursor.setRenderedStyle(null);
+            }
+            int lineBottom = positionConverter.offsetToPixel(offset).getY();
+            if (lineBottom <= viewportTop || lineBottom > viewportBottom) {
+                offscreenDocuments.add(liveDocument);
+                continue;
+            }
+            TextPosition position = liveDocument.getLineIndex().getPosition(offset);
+            TextRange textRange = new TextRange(position, position);
+            remoteCursor.setMarkerRegistration(liveDocument.getHasTextMarkers().addMarker(textRange, style));
+            remoteCursor.setRenderedOffset(offset);
+            remoteCursor.setRenderedStyle(style);
+        }
+    }
+
+    /** Listens to the scrolling of the editor's element, again if the document is shown by another editor. */
+    private void listenToScroll(LiveDocument liveDocument, Element element) {
+        if (scrolledElements.get(liveDocument) == element) {
+            return;
+        }
+        unlistenToScroll(liveDocument);
+        scrolledElements.put(liveDocument, element);
+        scrollListeners.put(liveDocument, addScrollListener(element, liveDocument));
+    }
+
+    private void unlistenToScroll(LiveDocument liveDocument) {
+        Element element = scrolledElements.remove(liveDocument);
+        JavaScriptObject listener = scrollListeners.remove(liveDocument);
+        if (element != null) {
+            removeScrollListener(element, listener);
+        }
+    }
+
+    /* scroll events do not bubble: they are captured from the scrolling child of the editor's element */
+    private native JavaScriptObject addScrollListener(Element element, LiveDocument liveDocument) /*-{
+        var renderer = this;
+        var listener = $entry(function() {
+            renderer.@org.eclipse.che.ide.flux.liveedit.RemoteCursorRenderer::scrolled(Lorg/eclipse/che/ide/flux/liveedit/LiveDocument;)(liveDocument);
+        });
+        element.addEventListener("scroll", listener, true);
+        return listener;
+    }-*/;
+
+    private static native void removeScrollListener(Element element, JavaScriptObject listener) /*-{
+        element.removeEventListener("scroll", listener, true);
+    }-*/;
+}
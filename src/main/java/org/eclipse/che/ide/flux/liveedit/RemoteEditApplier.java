@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.che.ide.api.editor.document.Document;
+
+import com.google.gwt.animation.client.AnimationScheduler;
+import com.google.gwt.user.client.Timer;
+
+/**
+ * Queues the remote edits ready to be applied and hands them over once per animation frame
+ * (or per configured tick), one batch per document, contiguous edits of a same peer being merged.
+ * At most a chunk worth of characters is applied per frame, so that a large paste streamed by a peer
+ * is applied incrementally instead of freezing the editor.
+ */
+public class RemoteEditApplier {
+
+    public interface BatchHandler {
+        void apply(LiveDocument liveDocument, List<LiveEdit> edits);
+    }
+
+    private final LiveEditConfiguration             configuration;
+    private final BatchHandler                      batchHandler;
+    private final Map<LiveDocument, List<LiveEdit>> queuedEdits = new LinkedHashMap<LiveDocument, List<LiveEdit>>();
+    private final Timer                             tickTimer   = new Timer() {
+        @Override
+        public void run() {
+            applyFrame();
+        }
+    };
+    private boolean scheduled;
+
+    public RemoteEditApplier(LiveEditConfiguration configuration, BatchHandler batchHandler) {
+        this.configuration = configuration;
+        this.batchHandler = batchHandler;
+    }
+
+    public void enqueue(LiveDocument liveDocument, LiveEdit edit) {
+        List<LiveEdit> edits = queuedEdits.get(liveDocument);
+        if (edits == null) {
+            edits = new ArrayList<LiveEdit>();
+            queuedEdits.put(liveDocument, edits);
+        }
+        LiveEdit merged = edits.isEmpty() ? null : edits.get(edits.size() - 1).mergeWith(edit);
+        if (merged != null && merged.getAddedCharacters().length() <= getFrameBudget()) {
+            edits.set(edits.size() - 1, merged);
+        } else {
+            edits.add(edit);
+        }
+        schedule();
+    }
+
+    public boolean hasQueuedEdits(LiveDocument liveDocument) {
+        return queuedEdits.containsKey(liveDocument);
+    }
+
+    /**
+     * Shifts the queued edits located after a local edit made before they could be applied,
+     * so that they still land on the text they were meant for.
+     */
+    public void localEditApplied(Document document, int offset, int removedCharCount, int addedCharCount) {
+        for (Map.Entry<LiveDocument, List<LiveEdit>> queued : queuedEdits.entrySet()) {
+            if (queued.getKey().getDocument() != document) {
+                continue;
+            }
+            List<LiveEdit> edits = queued.getValue();
+            for (int i = 0; i < edits.size(); i++) {
+                LiveEdit edit = edits.get(i);
+                if (edit.getOffset() >= offset + removedCharCount) {
+                    edits.set(i, edit.withOffset(edit.getOffset() + addedCharCount - removedCharCount));
+                }
+            }
+        }
+    }
+
+    /** Applies everything queued right now. */
+    public void flush() {
+        tickTimer.cancel();
+        scheduled = false;
+        while (!queuedEdits.isEmpty()) {
+            LiveDocument liveDocument = queuedEdits.keySet().iterator().next();
+            List<LiveEdit> edits = queuedEdits.remove(liveDocument);
+            batchHandler.apply(liveDocument, edits);
+        }
+    }
+
+    private void applyFrame() {
+        scheduled = false;
+        int budget = getFrameBudget();
+        while (!queuedEdits.isEmpty() && budget > 0) {
+            LiveDocument liveDocument = queuedEdits.keySet().iterator().next();
+            List<LiveEdit> edits = queuedEdits.get(liveDocument);
+            List<LiveEdit> batch = new ArrayList<LiveEdit>();
+            while (!edits.isEmpty() && budget > 0) {
+                LiveEdit edit = edits.remove(0);
+                batch.add(edit);
+                budget -= Math.max(1, edit.getAddedCharacters().length());
+            }
+            if (edits.isEmpty()) {
+                queuedEdits.remove(liveDocument);
+            }
+            batchHandler.apply(liveDocument, batch);
+        }
+        if (!queuedEdits.isEmpty()) {
+            schedule();
+        }
+    }
+
+    private int getFrameBudget() {
+        return configuration.getChunkSize() > 0 ? configuration.getChunkSize() : Integer.MAX_VALUE;
+    }
+
+    /** Drops and returns the edits queued for the document, e.g. when it is replaced by a snapshot. */
+    public List<LiveEdit> discard(LiveDocument liveDocument) {
+        List<LiveEdit> discarded = queuedEdits.remove(liveDocument);
+        return discarded != null ? discarded : new ArrayList<LiveEdit>();
+    }
+
+    private void schedule() {
+        if (scheduled) {
+            return;
+        }
+        scheduled = true;
+        if (configuration.getRemoteApplyTick() > 0) {
+            tickTimer.schedule(configuration.getRemoteApplyTick());
+            return;
+        }
+        AnimationScheduler.get().requestAnimationFrame(new AnimationScheduler.AnimationCallback() {
+            @Override
+            public void execute(double timestamp) {
+                if (scheduled) {
+                    applyFrame();
+                }
+            }
+        });
+    }
+}
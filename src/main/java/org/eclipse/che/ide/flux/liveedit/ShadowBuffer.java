@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The content of a live document whose editor has been closed, kept up to date with the peers' edits so that it is
+ * current when opened again. Only in-order edits can be applied: an edit following a gap makes the buffer stale.
+ */
+public class ShadowBuffer {
+    private final String               project;
+    private final String               resource;
+    private final String               location;
+    private final PieceTable           text;
+    private final Map<String, Integer> appliedSequences = new HashMap<String, Integer>();
+
+    /** Takes over the content of a document being closed, with the remote edits received but not applied yet. */
+    public ShadowBuffer(LiveDocument liveDocument, String localPeer, List<LiveEdit> pendingEdits) {
+        this(liveDocument.getProject(), liveDocument.getResource(), liveDocument.getDocument().getContents(),
+             liveDocument.getVersions(localPeer));
+        this.appliedSequences.remove(localPeer);
+        for (LiveEdit edit : pendingEdits) {
+            text.replace(edit.getOffset(), edit.getRemovedCharCount(), edit.getAddedCharacters());
+        }
+    }
+
+    ShadowBuffer(String project, String resource, String text, Map<String, Integer> versions) {
+        this.project = project;
+        this.resource = resource;
+        this.location = "/" + project + "/" + resource;
+        this.text = new PieceTable(text);
+        this.appliedSequences.putAll(versions);
+    }
+
+    public String getProject() {
+        return project;
+    }
+
+    public String getResource() {
+        return resource;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    /** Applies a peer's edit. Returns false if some of the peer's previous edits were missed. */
+    public boolean apply(LiveEdit edit) {
+        if (edit.getSequence() > 0) {
+            Integer applied = appliedSequences.get(edit.getPeer());
+            if (applied != null && edit.getSequence() <= applied && edit.getSequence() != 1) {
+                /* already applied */
+                return true;
+            }
+            if (applied != null && edit.getSequence() > applied + 1) {
+                return false;
+            }
+            appliedSequences.put(edit.getPeer(), edit.getSequence());
+        }
+        text.replace(edit.getOffset(), edit.getRemovedCharCount(), edit.getAddedCharacters());
+        return true;
+    }
+
+    /** Forgets the edits of a peer, which numbers them from scratch once it opens the resource again. */
+    public void resetPeer(String peer) {
+        appliedSequences.remove(peer);
+    }
+
+    public String getText() {
+        return text.getText();
+    }
+
+    /** The version of the content, as {@link LiveDocument#getVersions(String)}. */
+    public Map<String, Integer> getVersions() {
+        return appliedSequences;
+    }
+
+    /** Number of characters held. */
+    public int getSize() {
+        return text.getSize();
+    }
+}
@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * The shadow buffers of the closed live documents, within a memory budget: the least recently edited buffers are
+ * evicted once the characters they hold exceed {@link LiveEditConfiguration#getShadowBufferBudget()}.
+ */
+public class ShadowBufferRegistry {
+
+    public interface EvictionHandler {
+        void onEvicted(ShadowBuffer shadowBuffer);
+    }
+
+    private final LiveEditConfiguration configuration;
+    private final EvictionHandler       evictionHandler;
+    /* in access order: the least recently used buffers come first */
+    private final LinkedHashMap<String, ShadowBuffer> buffers = new LinkedHashMap<String, ShadowBuffer>(16, 0.75f, true);
+
+    public ShadowBufferRegistry(LiveEditConfiguration configuration, EvictionHandler evictionHandler) {
+        this.configuration = configuration;
+        this.evictionHandler = evictionHandler;
+    }
+
+    public boolean isEnabled() {
+        return configuration.getShadowBufferBudget() > 0;
+    }
+
+    public ShadowBuffer get(String project, String resource) {
+        return buffers.get(project + "/" + resource);
+    }
+
+    public void put(ShadowBuffer shadowBuffer) {
+        ShadowBuffer replaced = buffers.put(shadowBuffer.getProject() + "/" + shadowBuffer.getResource(), shadowBuffer);
+        if (replaced != null && replaced != shadowBuffer) {
+            evictionHandler.onEvicted(replaced);
+        }
+        enforceBudget();
+    }
+
+    /** Removes the buffer, e.g. when its document is opened again, without calling the eviction handler. */
+    public void remove(ShadowBuffer shadowBuffer) {
+        buffers.remove(shadowBuffer.getProject() + "/" + shadowBuffer.getResource());
+    }
+
+    /** Applies a peer's edit to a buffer, which is evicted if it has become stale or too large. */
+    public void apply(ShadowBuffer shadowBuffer, LiveEdit edit) {
+        if (!shadowBuffer.apply(edit)) {
+            remove(shadowBuffer);
+            evictionHandler.onEvicted(shadowBuffer);
+            return;
+        }
+        enforceBudget();
+    }
+
+    public List<ShadowBuffer> values() {
+        return new ArrayList<ShadowBuffer>(buffers.values());
+    }
+
+    private void enforceBudget() {
+        long size = 0;
+        for (ShadowBuffer shadowBuffer : buffers.values()) {
+            size += shadowBuffer.getSize();
+        }
+        for (Iterator<ShadowBuffer> iterator = buffers.values().iterator(); iterator.hasNext() && size > configuration.getShadowBufferBudget(); ) {
+            ShadowBuffer evicted = iterator.next();
+            iterator.remove();
+            size -= evicted.getSize();
+            evictionHandler.onEvicted(evicted);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * LZW compression of large texts into a base64 string, so that the result can travel in a JSON message.
+ * <p>
+ * The dictionary starts empty: a character seen for the first time is written as a literal (code 0 followed by
+ * its 16 bits) and then gets its own code. Codes are written with the number of bits needed for the greatest code
+ * defined so far and the dictionary stops growing at {@link #MAX_CODES} entries. The stream starts with the length
+ * of the text.
+ */
+public class TextCompression {
+    private static final int    MAX_CODES = 1 << 15;
+    private static final String BASE64    = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+    private static final int[]  DIGITS    = new int[128];
+
+    static {
+        for (int i = 0; i < BASE64.length(); i++) {
+            DIGITS[BASE64.charAt(i)] = i;
+        }
+    }
+
+    private TextCompression() {
+    }
+
+    /** Returns the compressed text, or null if compressing does not make it smaller. */
+    public static String compress(String text) {
+        BitWriter writer = new BitWriter(text.length() / 2);
+        writer.write(text.length() >>> 16, 16);
+        writer.write(text.length() & 0xffff, 16);
+        Map<Integer, Integer> codes = new HashMap<Integer, Integer>();
+        int nextCode = 1;
+        int current = -1;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (current >= 0) {
+                Integer extended = codes.get(current << 16 | c);
+                if (extended != null) {
+                    current = extended;
+                    continue;
+                }
+                writer.write(current, width(nextCode));
+                if (nextCode < MAX_CODES) {
+                    codes.put(current << 16 | c, nextCode++);
+                }
+            }
+            Integer single = codes.get((int)c);
+            if (single != null) {
+                current = single;
+                continue;
+            }
+            writer.write(0, width(nextCode));
+            writer.write(c, 16);
+            if (nextCode < MAX_CODES) {
+                codes.put((int)c, nextCode++);
+            }
+            current = -1;
+            if (writer.length() >= text.length()) {
+                return null;
+            }
+        }
+        if (current >= 0) {
+            writer.write(current, width(nextCode));
+        }
+        String compressed = writer.finish();
+        return compressed.length() < text.length() ? compressed : null;
+    }
+
+    public static String decompress(String compressed) {
+        BitReader reader = new BitReader(compressed);
+        int length = reader.read(16) << 16 | reader.read(16);
+        StringBuilder text = new StringBuilder(length);
+        String[] entries = new String[MAX_CODES];
+        int nextCode = 1;
+        String previous = null;
+        while (text.length() < length) {
+            boolean pending = previous != null && nextCode < MAX_CODES;
+            int code = reader.read(width(pending ? nextCode + 1 : nextCode));
+            if (code == 0) {
+                String c = String.valueOf((char)reader.read(16));
+                if (previous != null && nextCode < MAX_CODES) {
+                    entries[nextCode++] = previous + c;
+                }
+                if (nextCode < MAX_CODES) {
+                    entries[nextCode++] = c;
+                }
+                text.append(c);
+                previous = null;
+                continue;
+            }
+            String entry = code < nextCode ? entries[code] : previous + previous.charAt(0);
+            if (pending) {
+                entries[nextCode++] = previous + entry.charAt(0);
+            }
+            text.append(entry);
+            previous = entry;
+        }
+        return text.toString();
+    }
+
+    /** Number of bits needed to write any code defined so far. */
+    private static int width(int nextCode) {
+        int width = 1;
+        while ((1 << width) < nextCode) {
+            width++;
+        }
+        return width;
+    }
+
+    private static class BitWriter {
+        private final StringBuilder output;
+        private int                 buffer;
+        private int                 bufferSize;
+
+        BitWriter(int capacity) {
+            output = new StringBuilder(capacity);
+        }
+
+        void write(int value, int width) {
+            buffer = buffer << width | value;
+            bufferSize += width;
+            while (bufferSize >= 6) {
+                bufferSize -= 6;
+                output.append(BASE64.charAt(buffer >>> bufferSize & 0x3f));
+            }
+            buffer &= (1 << bufferSize) - 1;
+        }
+
+        int length() {
+            return output.length();
+        }
+
+        String finish() {
+            if (bufferSize > 0) {
+                write(0, 6 - bufferSize);
+            }
+            return output.toString();
+        }
+    }
+
+    private static class BitReader {
+        private final String input;
+        private int          position;
+        private int          buffer;
+        private int          bufferSize;
+
+        BitReader(String input) {
+            this.input = input;
+        }
+
+        int read(int width) {
+            while (bufferSize < width) {
+                buffer = buffer << 6 | DIGITS[input.charAt(position++)];
+                bufferSize += 6;
+            }
+            bufferSize -= width;
+            int value = buffer >>> bufferSize & ((1 << width) - 1);
+            buffer &= (1 << bufferSize) - 1;
+            return value;
+        }
+    }
+}
@@ -14,6 +14,7 @@ import com.google.gwt.core.client.JavaScriptObject;
 public class Message {
     protected String type;
     protected JavaScriptObject json;
+    protected int textLength;
 
     public Message withType(String type){
         this.type = type;
@@ -25,6 +26,12 @@ public class Message {
         return this;
     }
 
+    /** The number of characters of text the message carries, e.g. the characters added by an edit. */
+    public Message withTextLength(int textLength) {
+        this.textLength = textLength;
+        return this;
+    }
+
     public String getType() {
         return type;
     }
@@ -32,4 +39,8 @@ public class Message {
     public JavaScriptObject getJsonContent() {
         return json;
     }
+
+    public int getTextLength() {
+        return textLength;
+    }
 }
@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.socketio;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+
+import com.google.gwt.user.client.Timer;
+
+/**
+ * Outgoing messages waiting for the socket.
+ * <p>
+ * Ordered messages (e.g. edits) are emitted in order and never dropped. Latest-only messages (e.g. cursor moves)
+ * are keyed: a newer one replaces the pending one with the same key, and they are only emitted once no ordered
+ * message is pending, so that they never delay the edits. Nothing is handed over to socket.io while it is
+ * disconnected, where it would pile up in its own unbounded buffer.
+ * <p>
+ * Once the server has been seen acknowledging messages, at most maxInFlight unacknowledged messages are emitted.
+ * A server that stops acknowledging for ackTimeout does not block the queue: the in-flight messages are then
+ * considered delivered.
+ */
+public class OutboundQueue {
+
+    public interface SendListener {
+        void onSent(Message message);
+    }
+
+    private final int                            maxInFlight;
+    private final int                            ackTimeout;
+    private final SendListener                   sendListener;
+    private final LinkedList<Message>            orderedMessages = new LinkedList<Message>();
+    private final LinkedHashMap<String, Message> latestMessages  = new LinkedHashMap<String, Message>();
+    private final Timer                          ackTimer        = new Timer() {
+        @Override
+        public void run() {
+            inFlight = 0;
+            drain();
+        }
+    };
+    private SocketOverlay socket;
+    private boolean       paused = true;
+    private boolean       acknowledging;
+    private int           inFlight;
+    private int           maxDepth;
+    private int           supersededCount;
+
+    public OutboundQueue(int maxInFlight, int ackTimeout, SendListener sendListener) {
+        this.maxInFlight = maxInFlight;
+        this.ackTimeout = ackTimeout;
+        this.sendListener = sendListener;
+    }
+
+    /** Emits on the given socket from now on. The queue stays paused until {@link #resume()}. */
+    public void attach(final SocketOverlay socket) {
+        this.socket = socket;
+        paused = true;
+        inFlight = 0;
+        ackTimer.cancel();
+        socket.on("disconnect", new Runnable() {
+            @Override
+            public void run() {
+                if (OutboundQueue.this.socket == socket) {
+                    paused = true;
+                }
+            }
+        });
+    }
+
+    /** Emits what is pending, once the connection is ready again. */
+    public void resume() {
+        paused = false;
+        drain();
+    }
+
+    public void send(Message message) {
+        orderedMessages.add(message);
+        queued();
+    }
+
+    /** Sends the message unless a newer one with the same key is sent before it could be. */
+    public void sendLatest(String key, Message message) {
+        if (latestMessages.remove(key) != null) {
+            supersededCount++;
+        }
+        latestMessages.put(key, message);
+        queued();
+    }
+
+    /** Drops the pending latest-only message with the key, e.g. when an ordered message makes it stale. */
+    public void discardLatest(String key) {
+        if (latestMessages.remove(key) != null) {
+            supersededCount++;
+        }
+    }
+
+    public int getDepth() {
+        return orderedMessages.size() + latestMessages.size();
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /** How many latest-only messages were replaced or dropped before being sent. */
+    public int getSupersededCount() {
+        return supersededCount;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    private void queued() {
+        maxDepth = Math.max(maxDepth, getDepth());
+        drain();
+    }
+
+    private void drain() {
+        while (socket != null && !paused && (!acknowledging || inFlight < maxInFlight)) {
+            Message message;
+            if (!orderedMessages.isEmpty()) {
+                message = orderedMessages.removeFirst();
+            } else if (!latestMessages.isEmpty()) {
+                Iterator<Message> oldest = latestMessages.values().iterator();
+                message = oldest.next();
+                oldest.remove();
+            } else {
+                return;
+            }
+            emit(message);
+        }
+    }
+
+    private void emit(Message message) {
+        final SocketOverlay emittingSocket = socket;
+        if (acknowledging) {
+            inFlight++;
+        }
+        emittingSocket.emit(message, new Runnable() {
+            @Override
+            public void run() {
+                if (socket != emittingSocket) {
+                    return;
+                }
+                acknowledging = true;
+                inFlight = Math.max(0, inFlight - 1);
+                ackTimer.cancel();
+                if (inFlight > 0) {
+                    ackTimer.schedule(ackTimeout);
+                }
+                drain();
+            }
+        });
+        if (acknowledging && !ackTimer.isRunning()) {
+            ackTimer.schedule(ackTimeout);
+        }
+        sendListener.onSent(message);
+    }
+}
@@ -0,0 +1,216 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.socketio;
+
+/**
+ * A socket.io client sharing one connection per url between the tabs of the browser.
+ * <p>
+ * The tab holding the lock named after the url is the leader: it opens the connection and relays everything over a
+ * BroadcastChannel of the same name. The other tabs send their messages through it. The lock is released when the
+ * leader disconnects or its tab is closed, another tab then leading with a new connection: the others see the
+ * connection being lost and restored, and join their channels again.
+ * <p>
+ * The server does not send a message back to the connection it came from, so the messages a tab sends are also
+ * relayed to the other tabs. A channel is only left once no tab wants it anymore.
+ */
+public class SharedSocketIO {
+
+    private SharedSocketIO() {
+    }
+
+    public static native boolean isSupported() /*-{
+        return typeof $wnd.BroadcastChannel !== "undefined" && !!($wnd.navigator.locks && $wnd.navigator.locks.request);
+    }-*/;
+
+    /** Returns a client sharing the connections the given client opens. */
+    public static native SocketIOOverlay create(SocketIOOverlay io) /*-{
+        return {
+            connect: function(url, options) {
+                var name = "che.flux.liveedit:" + url;
+                var tab = Math.random().toString(36).substring(2) + Date.now().toString(36);
+                var channel = new $wnd.BroadcastChannel(name);
+                var handlers = {};
+                var acks = {};
+                var nextAck = 0;
+                var connected = false;
+                var closed = false;
+                /* when leading: the connection, the tabs that joined each channel and how to release the lock */
+                var leader = null;
+
+                function post(message) {
+                    if (!closed) {
+                        channel.postMessage(message);
+                    }
+                }
+
+                function deliver(name, args) {
+                    if (name === "connect" || name === "reconnect") {
+                        connected = true;
+                    } else if (name === "disconnect") {
+                        connected = false;
+                    }
+                    var eventHandlers = handlers[name] || [];
+                    for (var i = 0; i < eventHandlers.length; i++) {
+                        try {
+                            eventHandlers[i].apply(socket, args);
+                        } catch (e) {
+                            $wnd.console && $wnd.console.error(e);
+                        }
+                    }
+                }
+
+                function leadEmit(from, name, data, ack) {
+                    if (name === "connectToChannel") {
+                        (leader.joins[data.channel] = leader.joins[data.channel] || {})[from] = true;
+                    } else if (name === "disconnectFromChannel") {
+                        var tabs = leader.joins[data.channel] || {};
+                        delete tabs[from];
+                        for (var other in tabs) {
+                            /* still wanted by another tab */
+                            ack && ack();
+                            return;
+                        }
+                        delete leader.joins[data.channel];
+                    } else {
+                        post({type: "event", name: name, args: [data], except: from});
+                        if (from !== tab) {
+                            deliver(name, [data]);
+                        }
+                    }
+                    leader.socket.emit(name, data, ack || function() {});
+                }
+
+                function forgetTab(from) {
+                    for (var joined in leader.joins) {
+                        if (leader.joins[joined][from]) {
+                            leadEmit(from, "disconnectFromChannel", {channel: joined}, null);
+                        }
+                    }
+                }
+
+                function lead(release) {
+                    if (closed) {
+                        release();
+                        return;
+                    }
+                    /* the previous leader may be gone without a word: everyone starts over with the new connection */
+                    post({type: "leaving"});
+                    if (connected) {
+                        deliver("disconnect", []);
+                    }
+                    var leaderSocket = io.connect(url, options);
+                    leader = {socket: leaderSocket, joins: {}, release: release};
+                    var $emit = leaderSocket.$emit;
+                    leaderSocket.$emit = function(name) {
+                        var args = Array.prototype.slice.call(arguments, 1);
+                        var relayed = [];
+                        for (var i = 0; i < args.length; i++) {
+                            if (typeof args[i] !== "function") {
+                                relayed.push(args[i]);
+                            }
+                        }
+                        post({type: "event", name: name, args: relayed, except: null});
+                        deliver(name, args);
+                        return $emit.apply(leaderSocket, arguments);
+                    };
+                }
+
+                function close() {
+                    if (closed) {
+                        return;
+                    }
+                    if (leader) {
+                        post({type: "leaving"});
+                    } else {
+                        post({type: "bye", from: tab});
+                    }
+                    closed = true;
+                    channel.close();
+                    $wnd.removeEventListener("pagehide", onPageHide);
+                    if (leader) {
+                        leader.socket.disconnect();
+                        leader.release();
+                    }
+                }
+
+                var socket = {
+                    on: function(name, handler) {
+                        (handlers[name] = handlers[name] || []).push(handler);
+                        return socket;
+                    },
+                    emit: function(name, data, ack) {
+                        if (typeof ack !== "function") {
+                            ack = null;
+                        }
+                        if (leader) {
+                            leadEmit(tab, name, data, ack);
+                            return socket;
+                        }
+                        var id = null;
+                        if (ack) {
+                            id = nextAck++;
+                            acks[id] = ack;
+                        }
+                        post({type: "emit", from: tab, name: name, data: data, id: id});
+                        return socket;
+                    },
+                    disconnect: function() {
+                        close();
+                        return socket;
+                    },
+                    socket: {
+                        reconnect: function() {
+                            if (leader) {
+                                leader.socket.socket.reconnect();
+                            }
+                        }
+                    }
+                };
+
+                channel.onmessage = $entry(function(event) {
+                    var message = event.data;
+                    if (leader) {
+                        if (message.type === "emit") {
+                            leadEmit(message.from, message.name, message.data, message.id === null ? null : function() {
+                                post({type: "ack", to: message.from, id: message.id});
+                            });
+                        } else if (message.type === "hello" && connected) {
+                            post({type: "connected", to: message.from});
+                        } else if (message.type === "bye") {
+                            forgetTab(message.from);
+                        }
+                        return;
+                    }
+                    if (message.type === "event" && message.except !== tab) {
+                        deliver(message.name, message.args);
+                    } else if (message.type === "ack" && message.to === tab) {
+                        var ack = acks[message.id];
+                        delete acks[message.id];
+                        ack && ack();
+                    } else if (message.type === "connected" && message.to === tab && !connected) {
+                        deliver("connect", []);
+                    } else if (message.type === "leaving" && connected) {
+                        deliver("disconnect", []);
+                    }
+                });
+                var onPageHide = $entry(close);
+                $wnd.addEventListener("pagehide", onPageHide);
+                post({type: "hello", from: tab});
+                $wnd.navigator.locks.request(name, $entry(function() {
+                    return new $wnd.Promise(function(resolve) {
+                        lead(resolve);
+                    });
+                }));
+                return socket;
+            }
+        };
+    }-*/;
+}
@@ -23,4 +23,18 @@ public class SocketIOOverlay extends JavaScriptObject {
         });
     }-*/;
 
+    /**
+     * Opens a new connection, even if one to the same url exists, e.g. when the previous attempt failed.
+     * The reconnections after a connection loss are left to socket.io, with the given first delay and attempts.
+     */
+    public final native SocketOverlay connect(String url, int reconnectionDelay, int maxReconnectionAttempts, int connectTimeout) /*-{
+        return this.connect(url, {
+                   'force new connection': true,
+                   'reconnect': true,
+                   'reconnection delay': reconnectionDelay,
+                   'max reconnection attempts': maxReconnectionAttempts,
+                   'connect timeout': connectTimeout
+        });
+    }-*/;
+
 }
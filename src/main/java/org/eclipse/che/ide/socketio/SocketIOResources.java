@@ -17,4 +17,7 @@ public interface SocketIOResources extends ClientBundle {
 
     @Source("org/eclipse/che/ide/socketio/socket.io.js")
     TextResource socketIo();
+
+    @Source("org/eclipse/che/ide/socketio/socket.io-worker.js")
+    TextResource socketIoWorker();
 }
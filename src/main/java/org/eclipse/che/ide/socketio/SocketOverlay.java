@@ -21,10 +21,25 @@ public class SocketOverlay extends JavaScriptObject {
         this.socket.reconnect();
     }-*/;
 
+    public final native void disconnect() /*-{
+        this.disconnect();
+    }-*/;
+
     public final void emit(Message message){
         this.emit(message.getType(), message.getJsonContent());
     }
 
+    /** Emits the message, the runnable being called once the server acknowledges it, if it ever does. */
+    public final void emit(Message message, Runnable acknowledged) {
+        this.emit(message.getType(), message.getJsonContent(), acknowledged);
+    }
+
+    public final native void emit(String type, JavaScriptObject json, Runnable acknowledged) /*-{
+        this.emit(type, json, function(answer) {
+            acknowledged.@java.lang.Runnable::run()();
+        });
+    }-*/;
+
     public final native void emit(String type, JavaScriptObject json) /*-{
       this.emit(type, json, function(answer) {
             });
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.socketio;
+
+/**
+ * A socket.io client whose connections run in a Web Worker, see socket.io-worker.js.
+ * <p>
+ * The sockets it opens behave like the socket.io ones for {@link SocketOverlay}, except that the events arrive in
+ * batches, already parsed.
+ */
+public class WorkerSocketIO {
+
+    private WorkerSocketIO() {
+    }
+
+    public static native boolean isSupported() /*-{
+        return typeof $wnd.Worker !== "undefined" && typeof $wnd.Blob !== "undefined"
+               && !!($wnd.URL && $wnd.URL.createObjectURL);
+    }-*/;
+
+    /** Returns a client running the given socket.io source in a worker, the events being batched over the window. */
+    public static native SocketIOOverlay create(String socketIoSource, String workerSource, int batchWindow) /*-{
+        var socketIoUrl = $wnd.URL.createObjectURL(new $wnd.Blob([socketIoSource], {type: "application/javascript"}));
+        var workerUrl = $wnd.URL.createObjectURL(new $wnd.Blob([workerSource], {type: "application/javascript"}));
+        return {
+            connect: function(url, options) {
+                var worker = new $wnd.Worker(workerUrl);
+                var handlers = {};
+                var acks = {};
+                var nextAck = 0;
+                var socket = {
+                    on: function(name, handler) {
+                        (handlers[name] = handlers[name] || []).push(handler);
+                        return socket;
+                    },
+                    emit: function(name, data, ack) {
+                        var id = null;
+                        if (typeof ack === "function") {
+                            id = nextAck++;
+                            acks[id] = ack;
+                        }
+                        worker.postMessage({type: "emit", event: name, data: data, id: id});
+                        return socket;
+                    },
+                    disconnect: function() {
+                        worker.postMessage({type: "disconnect"});
+                        return socket;
+                    },
+                    socket: {
+                        reconnect: function() {
+                            worker.postMessage({type: "reconnect"});
+                        }
+                    },
+                    /* dispatches a received event, as socket.io does */
+                    $emit: function(name) {
+                        var eventHandlers = handlers[name] || [];
+                        var args = Array.prototype.slice.call(arguments, 1);
+                        for (var i = 0; i < eventHandlers.length; i++) {
+                            try {
+                                eventHandlers[i].apply(socket, args);
+                            } catch (e) {
+                                $wnd.console && $wnd.console.error(e);
+                            }
+                        }
+                    }
+                };
+                worker.onmessage = $entry(function(message) {
+                    if (message.data.type === "ack") {
+                        var ack = acks[message.data.id];
+                        delete acks[message.data.id];
+                        if (ack) {
+                            ack();
+                        }
+                        return;
+                    }
+                    var events = message.data.events;
+                    for (var i = 0; i < events.length; i++) {
+                        socket.$emit.apply(socket, events[i]);
+                    }
+                });
+                worker.postMessage({type: "init", socketIoUrl: socketIoUrl, batchWindow: batchWindow});
+                worker.postMessage({type: "connect", url: url, options: options});
+                return socket;
+            }
+        };
+    }-*/;
+}
@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+
+/*
+ * Runs a socket.io connection off the main thread, see WorkerSocketIO.
+ *
+ * The messages are parsed here. They are posted to the main thread in batches, one per batch window while they keep
+ * coming, the connection events being posted right away. Their compressed text is decoded on the main thread, by
+ * TextCompression, as are the coalescing and the transformation of the edits.
+ */
+var socket = null;
+var batchWindow = 16;
+var pendingEvents = [];
+var flushScheduled = false;
+var CONNECTION_EVENTS = {
+    'connect': true,
+    'reconnect': true,
+    'disconnect': true,
+    'error': true,
+    'connect_failed': true,
+    'reconnecting': true,
+    'reconnect_failed': true
+};
+
+self.onmessage = function (event) {
+    var command = event.data;
+    switch (command.type) {
+        case 'init':
+            importScripts(command.socketIoUrl);
+            batchWindow = command.batchWindow;
+            break;
+        case 'connect':
+            connect(command.url, command.options);
+            break;
+        case 'emit':
+            emit(command.event, command.data, command.id);
+            break;
+        case 'reconnect':
+            if (socket) {
+                socket.socket.reconnect();
+            }
+            break;
+        case 'disconnect':
+            if (socket) {
+                socket.disconnect();
+            }
+            flush();
+            self.close();
+            break;
+    }
+};
+
+function connect(url, options) {
+    /* the other transports need a document */
+    options.transports = options.transports || ['websocket', 'xhr-polling'];
+    socket = io.connect(url, options);
+    var $emit = socket.$emit;
+    socket.$emit = function (name) {
+        var args = [];
+        for (var i = 1; i < arguments.length; i++) {
+            /* the acknowledgement callbacks the server asks for cannot be posted */
+            if (typeof arguments[i] !== 'function') {
+                args.push(arguments[i]);
+            }
+        }
+        post(name, args);
+        return $emit.apply(socket, arguments);
+    };
+}
+
+function emit(name, data, id) {
+    if (!socket) {
+        return;
+    }
+    if (id === null || id === undefined) {
+        socket.emit(name, data);
+        return;
+    }
+    socket.emit(name, data, function () {
+        self.postMessage({type: 'ack', id: id});
+    });
+}
+
+function post(name, args) {
+    pendingEvents.push([name].concat(args));
+    if (CONNECTION_EVENTS[name]) {
+        flush();
+    } else if (!flushScheduled) {
+        flushScheduled = true;
+        setTimeout(flush, batchWindow);
+    }
+}
+
+function flush() {
+    flushScheduled = false;
+    if (pendingEvents.length > 0) {
+        self.postMessage({type: 'events', events: pendingEvents});
+        pendingEvents = [];
+    }
+}
@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CompactProtocolTest {
+    private CompactProtocol alice;
+    private CompactProtocol bob;
+
+    @Before
+    public void sayHello() {
+        alice = new CompactProtocol();
+        bob = new CompactProtocol();
+        alice.serverWelcomed();
+        bob.serverWelcomed();
+        alice.helloReceived(bob.getLocalPeer(), "bob", "alice", false);
+        bob.helloReceived(alice.getLocalPeer(), "alice", "bob", true);
+    }
+
+    @Test
+    public void resourceIsAnnouncedOnce() {
+        assertTrue(alice.markAnnounced("project", "Main.java"));
+        assertFalse(alice.markAnnounced("project", "Main.java"));
+        assertTrue(alice.markAnnounced("project", "Other.java"));
+        assertEquals(alice.getResourceId("project", "Main.java"), alice.getResourceId("project", "Main.java"));
+        assertNotEquals(alice.getResourceId("project", "Main.java"), alice.getResourceId("project", "Other.java"));
+    }
+
+    @Test
+    public void announcedResourceIsDecoded() {
+        int resourceId = alice.getResourceId("project", "Main.java");
+        alice.markAnnounced("project", "Main.java");
+        bob.resourceDefined(alice.getLocalPeer(), resourceId, "project", "Main.java");
+
+        assertEquals("alice", bob.getPeer(alice.getLocalPeer()));
+        assertArrayEquals(new String[]{"project", "Main.java"}, bob.getResource(alice.getLocalPeer(), resourceId));
+    }
+
+    @Test
+    public void newPeerGetsTheAnnouncements() {
+        alice.markAnnounced("project", "Main.java");
+
+        assertTrue(alice.helloReceived(42, "carol", "alice", false));
+        assertTrue(alice.markAnnounced("project", "Main.java"));
+    }
+
+    @Test
+    public void knownPeerJoiningLateGetsTheAnnouncementsAgain() {
+        int resourceId = alice.getResourceId("project", "Main.java");
+        alice.markAnnounced("project", "Main.java");
+
+        /* bob reloads, or opens the resource's channel after the announcement went out */
+        CompactProtocol lateBob = new CompactProtocol();
+        lateBob.helloReceived(alice.getLocalPeer(), "alice", "bob", true);
+        assertNull(lateBob.getResource(alice.getLocalPeer(), resourceId));
+        assertTrue(lateBob.announcementsMissed(alice.getLocalPeer()));
+
+        assertFalse(alice.helloReceived(lateBob.getLocalPeer(), "bob", "alice", false));
+        assertTrue("the resource is announced again", alice.markAnnounced("project", "Main.java"));
+        lateBob.resourceDefined(alice.getLocalPeer(), resourceId, "project", "Main.java");
+        assertArrayEquals(new String[]{"project", "Main.java"}, lateBob.getResource(alice.getLocalPeer(), resourceId));
+    }
+
+    @Test
+    public void replyDoesNotAnnounceAgain() {
+        alice.markAnnounced("project", "Main.java");
+
+        assertFalse(alice.helloReceived(bob.getLocalPeer(), "bob", "alice", true));
+        assertFalse(alice.markAnnounced("project", "Main.java"));
+    }
+
+    @Test
+    public void missedAnnouncementsAreAskedForOnce() {
+        int peer = alice.getLocalPeer();
+
+        assertTrue(bob.announcementsMissed(peer));
+        assertFalse("the hello already sent is awaited", bob.announcementsMissed(peer));
+        bob.resourceDefined(peer, 1, "project", "Main.java");
+        assertTrue(bob.announcementsMissed(peer));
+        bob.helloReceived(peer, "alice", "bob", true);
+        assertTrue(bob.announcementsMissed(peer));
+    }
+
+    @Test
+    public void connectionResetAnnouncesAgain() {
+        alice.markAnnounced("project", "Main.java");
+
+        alice.connectionReset();
+
+        assertFalse(alice.canSend());
+        assertTrue(alice.markAnnounced("project", "Main.java"));
+    }
+
+    @Test
+    public void verbosePeerPreventsCompactMessages() {
+        assertTrue(alice.canSend());
+
+        alice.verboseMessageReceived("dave");
+        assertFalse(alice.canSend());
+        alice.peerLeft("dave");
+        assertTrue(alice.canSend());
+    }
+
+    @Test
+    public void peerIdTakenByAnotherPeerIsChanged() {
+        int taken = alice.getLocalPeer();
+        alice.markAnnounced("project", "Main.java");
+
+        /* the greatest full id gives way */
+        alice.helloReceived(taken, "aaron", "alice", false);
+
+        assertNotEquals(taken, alice.getLocalPeer());
+        assertTrue(alice.markAnnounced("project", "Main.java"));
+    }
+
+    @Test
+    public void forgottenResourceGetsANewId() {
+        int resourceId = alice.getResourceId("project", "Main.java");
+        alice.markAnnounced("project", "Main.java");
+
+        alice.forget("project", "Main.java");
+
+        assertNotEquals(resourceId, alice.getResourceId("project", "Main.java"));
+        assertTrue(alice.markAnnounced("project", "Main.java"));
+    }
+}
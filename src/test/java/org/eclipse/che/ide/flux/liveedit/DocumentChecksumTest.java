@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class DocumentChecksumTest {
+
+    @Test
+    public void replacementIsFollowedFromTheTextBeforeIt() {
+        Random random = new Random(17);
+        StringBuilder text = new StringBuilder("class Main {\n}\n");
+        DocumentChecksum checksum = new DocumentChecksum();
+        checksum.reset(text.toString());
+        for (int i = 0; i < 3000; i++) {
+            int offset = random.nextInt(text.length() + 1);
+            int removedCharCount = random.nextInt(3) == 0 ? random.nextInt(Math.min(20, text.length() - offset) + 1) : 0;
+            String addedCharacters = random.nextInt(50) == 0 ? "" : randomText(random, random.nextInt(6));
+            checksum.replace(textOf(text), offset, removedCharCount, addedCharacters);
+            text.replace(offset, offset + removedCharCount, addedCharacters);
+            assertEquals(fullValue(text.toString()), checksum.getValue());
+        }
+    }
+
+    @Test
+    public void insertionIsFollowedFromTheTextAfterIt() {
+        Random random = new Random(23);
+        StringBuilder text = new StringBuilder();
+        DocumentChecksum checksum = new DocumentChecksum();
+        checksum.reset("");
+        for (int i = 0; i < 1000; i++) {
+            int offset = random.nextInt(text.length() + 1);
+            String addedCharacters = randomText(random, 1 + random.nextInt(4));
+            text.insert(offset, addedCharacters);
+            checksum.inserted(textOf(text), offset, addedCharacters.length());
+            assertEquals(fullValue(text.toString()), checksum.getValue());
+        }
+    }
+
+    @Test
+    public void readsOnlyTheCharactersAroundTheEdit() {
+        final StringBuilder text = new StringBuilder("0123456789");
+        final int[] read = new int[1];
+        DocumentChecksum checksum = new DocumentChecksum();
+        checksum.reset(text.toString());
+
+        checksum.replace(new DocumentChecksum.Text() {
+            @Override
+            public int length() {
+                return text.length();
+            }
+
+            @Override
+            public String getText(int start, int end) {
+                read[0] += end - start;
+                return text.substring(start, end);
+            }
+        }, 4, 2, "ab");
+
+        assertEquals(4, read[0]);
+        assertEquals(fullValue("0123ab6789"), checksum.getValue());
+    }
+
+    @Test
+    public void emptiedDocumentHasTheValueOfAnEmptyText() {
+        DocumentChecksum checksum = new DocumentChecksum();
+        checksum.reset("abc");
+
+        checksum.replace(textOf(new StringBuilder("abc")), 0, 3, "");
+
+        assertEquals(fullValue(""), checksum.getValue());
+    }
+
+    @Test
+    public void clampsAnEditBeyondTheEnd() {
+        DocumentChecksum checksum = new DocumentChecksum();
+        checksum.reset("abc");
+
+        checksum.replace(textOf(new StringBuilder("abc")), 2, 10, "d");
+
+        assertEquals(fullValue("abd"), checksum.getValue());
+    }
+
+    @Test
+    public void tellsSwappedCharactersAndLinesApart() {
+        assertNotEquals(fullValue("ab"), fullValue("ba"));
+        assertNotEquals(fullValue("first\nsecond\n"), fullValue("second\nfirst\n"));
+        assertNotEquals(fullValue("a"), fullValue("aa"));
+    }
+
+    private static int fullValue(String text) {
+        DocumentChecksum checksum = new DocumentChecksum();
+        checksum.reset(text);
+        return checksum.getValue();
+    }
+
+    private static DocumentChecksum.Text textOf(final StringBuilder text) {
+        return new DocumentChecksum.Text() {
+            @Override
+            public int length() {
+                return text.length();
+            }
+
+            @Override
+            public String getText(int start, int end) {
+                return text.substring(start, end);
+            }
+        };
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            text.append("ab{}\n é".charAt(random.nextInt(7)));
+        }
+        return text.toString();
+    }
+}
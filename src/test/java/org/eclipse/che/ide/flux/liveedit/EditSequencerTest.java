@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EditSequencerTest {
+    private final EditSequencer sequencer = new EditSequencer(10);
+
+    @Test
+    public void editsFollowingAGapAreHeldBack() {
+        assertEquals(1, sequencer.receive(edit(4)).size());
+        assertTrue(sequencer.receive(edit(6)).isEmpty());
+        assertTrue(sequencer.hasGap("alice"));
+        assertTrue(sequencer.receive(edit(4)).isEmpty());
+
+        List<LiveEdit> ready = sequencer.receive(edit(5));
+
+        assertEquals(2, ready.size());
+        assertEquals(6, ready.get(1).getSequence());
+        assertFalse(sequencer.hasGaps());
+        assertEquals(6, sequencer.getAppliedSequence("alice"));
+    }
+
+    @Test
+    public void skippedGapReleasesTheEditsHeldBack() {
+        sequencer.receive(edit(1));
+        sequencer.receive(edit(3));
+        assertTrue(sequencer.markResyncRequested("alice"));
+        assertFalse(sequencer.markResyncRequested("alice"));
+
+        assertEquals(1, sequencer.skipGap("alice").size());
+        assertFalse(sequencer.isResyncPending());
+        assertEquals(1, sequencer.receive(edit(4)).size());
+    }
+
+    @Test
+    public void versionsCountTheLocalEdits() {
+        sequencer.receive(edit(2));
+        sequencer.recordLocalEdit("bob", 0, 0, "a");
+        sequencer.recordLocalEdit("bob", 1, 0, "b");
+
+        Map<String, Integer> versions = sequencer.getVersions("bob");
+        assertEquals(Integer.valueOf(2), versions.get("alice"));
+        assertEquals(Integer.valueOf(2), versions.get("bob"));
+        assertEquals(1, sequencer.getLocalEditsSince(1).size());
+
+        sequencer.reset("bob", Collections.singletonMap("alice", 7));
+        assertEquals(7, sequencer.getAppliedSequence("alice"));
+    }
+
+    private static LiveEdit edit(int sequence) {
+        return new LiveEdit("alice", sequence, 0, 0, "x");
+    }
+}
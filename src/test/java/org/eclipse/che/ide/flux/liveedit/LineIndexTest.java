@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit;
+
+import java.util.Random;
+
+import org.eclipse.che.ide.api.editor.text.TextPosition;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class LineIndexTest {
+
+    @Test
+    public void convertsOffsetsAndPositions() {
+        LineIndex lineIndex = new LineIndex("ab\ncd\r\n\nef");
+
+        assertEquals(4, lineIndex.getLineCount());
+        assertEquals(10, lineIndex.getLength());
+        assertPosition(0, 0, lineIndex.getPosition(0));
+        assertPosition(0, 2, lineIndex.getPosition(2));
+        assertPosition(1, 0, lineIndex.getPosition(3));
+        assertPosition(1, 3, lineIndex.getPosition(6));
+        assertPosition(2, 0, lineIndex.getPosition(7));
+        assertPosition(3, 2, lineIndex.getPosition(10));
+        assertEquals(8, lineIndex.getOffset(new TextPosition(3, 0)));
+    }
+
+    @Test
+    public void clampsOutOfRangeValues() {
+        LineIndex lineIndex = new LineIndex("ab\ncd");
+
+        assertPosition(0, 0, lineIndex.getPosition(-3));
+        assertPosition(1, 2, lineIndex.getPosition(42));
+        assertEquals(3, lineIndex.getOffset(new TextPosition(7, 0)));
+        assertEquals(5, lineIndex.getOffset(new TextPosition(1, 9)));
+    }
+
+    @Test
+    public void followsEditsAddingAndRemovingLines() {
+        LineIndex lineIndex = new LineIndex("one\ntwo\nthree");
+
+        lineIndex.replace(3, 5, "\n2\n2bis\n");
+        assertIndexes("one\n2\n2bis\nthree", lineIndex);
+        lineIndex.replace(0, 0, "zero\n");
+        assertIndexes("zero\none\n2\n2bis\nthree", lineIndex);
+        lineIndex.replace(4, 7, "");
+        assertIndexes("zero2bis\nthree", lineIndex);
+    }
+
+    @Test
+    public void matchesANaiveIndexAfterRandomEdits() {
+        Random random = new Random(7);
+        StringBuilder text = new StringBuilder("first line\nsecond line\n\nlast line");
+        LineIndex lineIndex = new LineIndex(text.toString());
+        for (int i = 0; i < 2000; i++) {
+            /* mostly typing around the same place, sometimes jumping elsewhere */
+            int offset = i % 20 == 0 ? random.nextInt(text.length() + 1)
+                                      : Math.min(text.length(), Math.max(0, lineIndex.getLength() / 2 + random.nextInt(20) - 10));
+            int removedCharCount = random.nextInt(4) == 0 ? random.nextInt(Math.min(30, text.length() - offset) + 1) : 0;
+            String addedCharacters = randomText(random, random.nextInt(8));
+            text.replace(offset, offset + removedCharCount, addedCharacters);
+            lineIndex.replace(offset, removedCharCount, addedCharacters);
+            if (i % 50 == 0) {
+                assertIndexes(text.toString(), lineIndex);
+            }
+        }
+        assertIndexes(text.toString(), lineIndex);
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            text.append("ab \n\r".charAt(random.nextInt(5)));
+        }
+        return text.toString();
+    }
+
+    /** Compares every conversion with the one computed by scanning the text. */
+    private static void assertIndexes(String text, LineIndex lineIndex) {
+        assertEquals(text.length(), lineIndex.getLength());
+        int line = 0;
+        int lineStart = 0;
+        for (int offset = 0; offset <= text.length(); offset++) {
+            assertPosition(line, offset - lineStart, lineIndex.getPosition(offset));
+            assertEquals(offset, lineIndex.getOffset(new TextPosition(line, offset - lineStart)));
+            if (offset < text.length() && text.charAt(offset) == '\n') {
+                line++;
+                lineStart = offset + 1;
+            }
+        }
+        assertEquals(line + 1, lineIndex.getLineCount());
+    }
+
+    private static void assertPosition(int line, int character, TextPosition position) {
+        assertEquals(line, position.getLine());
+        assertEquals(character, position.getCharacter());
+    }
+}
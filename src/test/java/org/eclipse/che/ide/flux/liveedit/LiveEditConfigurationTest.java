@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit;
+
+import org.eclipse.che.ide.api.preferences.PreferencesManager;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class LiveEditConfigurationTest {
+
+    @Test
+    public void keepsTheDefaultsWithoutPreferences() {
+        LiveEditConfiguration configuration = new LiveEditConfiguration(mock(PreferencesManager.class));
+
+        assertEquals(LiveEditConfiguration.DEFAULT_EDIT_COALESCING_WINDOW, configuration.getEditCoalescingWindow());
+        assertEquals(LiveEditConfiguration.DEFAULT_CHANNEL_SCOPE, configuration.getChannelScope());
+        assertEquals(LiveEditConfiguration.DEFAULT_COMPACT_PROTOCOL, configuration.isCompactProtocol());
+        assertEquals(LiveEditConfiguration.DEFAULT_SHARED_CONNECTION, configuration.isSharedConnection());
+    }
+
+    @Test
+    public void readsTheOptionsFromThePreferences() {
+        PreferencesManager preferences = mock(PreferencesManager.class);
+        when(preferences.getValue("liveedit.editCoalescingWindow")).thenReturn("20");
+        when(preferences.getValue("liveedit.channelScope")).thenReturn("resource");
+        when(preferences.getValue("liveedit.compactProtocol")).thenReturn("true");
+        when(preferences.getValue("liveedit.workerConnection")).thenReturn(" true ");
+        when(preferences.getValue("liveedit.sharedConnection")).thenReturn("TRUE");
+
+        LiveEditConfiguration configuration = new LiveEditConfiguration(preferences);
+
+        assertEquals(20, configuration.getEditCoalescingWindow());
+        assertEquals(LiveEditConfiguration.ChannelScope.RESOURCE, configuration.getChannelScope());
+        assertTrue(configuration.isCompactProtocol());
+        assertTrue(configuration.isWorkerConnection());
+        assertTrue(configuration.isSharedConnection());
+    }
+
+    @Test
+    public void keepsTheDefaultsForInvalidValues() {
+        PreferencesManager preferences = mock(PreferencesManager.class);
+        when(preferences.getValue("liveedit.editCoalescingWindow")).thenReturn("fast");
+        when(preferences.getValue("liveedit.channelScope")).thenReturn("galaxy");
+        when(preferences.getValue("liveedit.compactProtocol")).thenReturn("no");
+        when(preferences.getValue("liveedit.maxPeers")).thenReturn("");
+
+        LiveEditConfiguration configuration = new LiveEditConfiguration(preferences);
+
+        assertEquals(LiveEditConfiguration.DEFAULT_EDIT_COALESCING_WINDOW, configuration.getEditCoalescingWindow());
+        assertEquals(LiveEditConfiguration.DEFAULT_CHANNEL_SCOPE, configuration.getChannelScope());
+        assertEquals(LiveEditConfiguration.DEFAULT_COMPACT_PROTOCOL, configuration.isCompactProtocol());
+        assertEquals(LiveEditConfiguration.DEFAULT_MAX_PEERS, configuration.getMaxPeers());
+    }
+}
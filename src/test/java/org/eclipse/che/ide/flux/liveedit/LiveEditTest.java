@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LiveEditTest {
+
+    @Test
+    public void mergesTheEditsOfTheSamePeerOnly() {
+        LiveEdit typed = new LiveEdit("alice", 1, 3, 0, "ab");
+
+        LiveEdit merged = typed.mergeWith(new LiveEdit("alice", 2, 5, 0, "c"));
+
+        assertEquals(2, merged.getSequence());
+        assertEquals(3, merged.getOffset());
+        assertEquals("abc", merged.getAddedCharacters());
+        assertNull(typed.mergeWith(new LiveEdit("bob", 2, 5, 0, "c")));
+        assertNull(new LiveEdit(null, 0, 3, 0, "ab").mergeWith(new LiveEdit(null, 0, 5, 0, "c")));
+    }
+
+    @Test
+    public void backspaceEatsTheAddedCharactersThenTheOnesBefore() {
+        LiveEdit typed = new LiveEdit("alice", 1, 3, 1, "ab");
+
+        LiveEdit merged = typed.mergeWith(4, 1, "");
+        assertEquals(3, merged.getOffset());
+        assertEquals(1, merged.getRemovedCharCount());
+        assertEquals("a", merged.getAddedCharacters());
+
+        merged = typed.mergeWith(2, 3, "");
+        assertEquals(2, merged.getOffset());
+        assertEquals(2, merged.getRemovedCharCount());
+        assertEquals("", merged.getAddedCharacters());
+        assertEquals(1, merged.getSequence());
+    }
+
+    @Test
+    public void forwardDeleteAfterTheAddedCharactersIsMerged() {
+        LiveEdit merged = new LiveEdit("alice", 1, 3, 0, "ab").mergeWith(5, 2, "");
+
+        assertEquals(2, merged.getRemovedCharCount());
+        assertEquals("ab", merged.getAddedCharacters());
+        assertNull(new LiveEdit("alice", 1, 3, 0, "ab").mergeWith(7, 0, "x"));
+    }
+
+    @Test
+    public void keepsTheTimingOfTheSampledEdit() {
+        LiveEdit timed = new LiveEdit("alice", 1, 3, 0, "a").withTiming(10, 20);
+
+        assertTrue(timed.mergeWith(new LiveEdit("alice", 2, 4, 0, "b")).isTimed());
+        assertTrue(new LiveEdit("alice", 1, 3, 0, "a").mergeWith(new LiveEdit("alice", 2, 4, 0, "b").withTiming(10, 20)).isTimed());
+    }
+}
@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class OfflineEditLogTest {
+
+    @Test
+    public void mergesContiguousEdits() {
+        OfflineEditLog log = new OfflineEditLog();
+        log.add(new LiveEdit("alice", 1, 4, 0, "ab"), 42);
+        log.add(new LiveEdit("alice", 2, 6, 0, "c"), 0);
+        log.add(new LiveEdit("alice", 3, 6, 1, ""), 0);
+        log.add(new LiveEdit("alice", 4, 0, 1, ""), 0);
+
+        assertEquals(2, log.getEdits().size());
+        assertEquals("ab", log.getEdits().get(0).getAddedCharacters());
+        assertEquals(42, log.getBaseChecksum());
+    }
+
+    @Test
+    public void rebasesARemoteEditBeforeAndAfterTheLog() {
+        OfflineEditLog log = new OfflineEditLog();
+        log.add(new LiveEdit("alice", 1, 6, 0, "big "), 0);
+
+        /* "hello world" becomes "hello big world" here and "hi, hello world!" on the peer */
+        LiveEdit after = log.rebase(new LiveEdit("bob", 1, 11, 0, "!"));
+        LiveEdit before = log.rebase(new LiveEdit("bob", 2, 0, 0, "hi, "));
+
+        assertEquals(15, after.getOffset());
+        assertEquals(0, before.getOffset());
+        assertEquals(10, log.getEdits().get(0).getOffset());
+    }
+
+    @Test
+    public void overlappingRemoteEditIsAConflict() {
+        OfflineEditLog log = new OfflineEditLog();
+        log.add(new LiveEdit("alice", 1, 2, 3, "xyz"), 0);
+
+        assertNull(log.rebase(new LiveEdit("bob", 1, 3, 2, "")));
+        assertTrue(log.getConflictPeers().contains("bob"));
+        assertEquals(2, log.getEdits().get(0).getOffset());
+    }
+
+    @Test
+    public void rebasedEditsConvergeWithTheNaiveApplication() {
+        Random random = new Random(13);
+        int rebasedCount = 0;
+        for (int trial = 0; trial < 3000; trial++) {
+            String base = randomText(random, 10 + random.nextInt(30));
+            OfflineEditLog log = new OfflineEditLog();
+            String local = base;
+            for (int i = random.nextInt(4) + 1; i > 0; i--) {
+                LiveEdit edit = randomEdit(random, "alice", local);
+                log.add(edit, 0);
+                local = apply(local, edit);
+            }
+            /* the peer edited the base text meanwhile */
+            String remoteText = base;
+            String merged = local;
+            for (int i = random.nextInt(3) + 1; i > 0; i--) {
+                LiveEdit remote = randomEdit(random, "bob", remoteText);
+                remoteText = apply(remoteText, remote);
+                LiveEdit rebased = log.rebase(remote);
+                if (rebased == null) {
+                    assertTrue(log.getConflictPeers().contains("bob"));
+                    merged = null;
+                    break;
+                }
+                merged = apply(merged, rebased);
+            }
+            if (merged == null) {
+                continue;
+            }
+            /* the peer applies our replayed edits on top of its own */
+            String replayed = remoteText;
+            for (LiveEdit edit : log.getEdits()) {
+                replayed = apply(replayed, edit);
+            }
+            assertEquals(merged, replayed);
+            rebasedCount++;
+        }
+        assertTrue(rebasedCount > 1000);
+    }
+
+    private static LiveEdit randomEdit(Random random, String peer, String text) {
+        int offset = random.nextInt(text.length() + 1);
+        int removedCharCount = random.nextInt(3) == 0 ? random.nextInt(Math.min(5, text.length() - offset) + 1) : 0;
+        String addedCharacters = removedCharCount > 0 && random.nextBoolean() ? "" : randomText(random, 1 + random.nextInt(3));
+        return new LiveEdit(peer, 0, offset, removedCharCount, addedCharacters);
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            text.append((char)('a' + random.nextInt(26)));
+        }
+        return text.toString();
+    }
+
+    private static String apply(String text, LiveEdit edit) {
+        return text.substring(0, edit.getOffset()) + edit.getAddedCharacters()
+               + text.substring(edit.getOffset() + edit.getRemovedCharCount());
+    }
+}
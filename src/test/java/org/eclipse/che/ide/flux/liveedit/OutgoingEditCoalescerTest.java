@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.che.ide.api.editor.document.Document;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class OutgoingEditCoalescerTest {
+    private final List<LiveEdit>  flushedEdits  = new ArrayList<LiveEdit>();
+    private final Document        document      = mock(Document.class);
+    private final Document        otherDocument = mock(Document.class);
+    private OutgoingEditCoalescer coalescer;
+    private int                   scheduledFlushes;
+
+    @Before
+    public void createCoalescer() {
+        LiveEditConfiguration configuration = new LiveEditConfiguration().withEditCoalescingWindow(100).withEditCoalescingMaxChars(50);
+        coalescer = new OutgoingEditCoalescer(configuration, new OutgoingEditCoalescer.FlushHandler() {
+            @Override
+            public void onFlush(Document flushedDocument, int offset, int removedCharCount, String addedCharacters) {
+                flushedEdits.add(new LiveEdit(flushedDocument == document ? "document" : "other", 0, offset, removedCharCount,
+                                              addedCharacters));
+            }
+        }) {
+            @Override
+            protected void scheduleFlush(int delay) {
+                scheduledFlushes++;
+            }
+        };
+    }
+
+    @Test
+    public void mergesTyping() {
+        coalescer.add(document, 3, 0, "a");
+        coalescer.add(document, 4, 0, "b");
+        coalescer.add(document, 5, 0, "c");
+
+        assertTrue(flushedEdits.isEmpty());
+        assertTrue(coalescer.isAtPendingEnd(document, 6));
+        assertEquals(1, scheduledFlushes);
+        coalescer.flush();
+        assertFlushed(3, 0, "abc", flushedEdits.get(0));
+    }
+
+    @Test
+    public void backspaceEatsThePendingInsertionThenTheTextBefore() {
+        coalescer.add(document, 3, 0, "ab");
+        coalescer.add(document, 4, 1, null);
+        coalescer.add(document, 2, 2, null);
+        coalescer.flush();
+
+        assertFlushed(2, 1, "", flushedEdits.get(0));
+    }
+
+    @Test
+    public void backspacingTheWholeInsertionSendsNothing() {
+        coalescer.add(document, 3, 0, "ab");
+        coalescer.add(document, 3, 2, "");
+        coalescer.flush();
+
+        assertTrue(flushedEdits.isEmpty());
+    }
+
+    @Test
+    public void flushesOnAJumpOrAnotherDocument() {
+        coalescer.add(document, 3, 0, "a");
+        coalescer.add(document, 10, 0, "b");
+        coalescer.add(otherDocument, 11, 0, "c");
+
+        assertEquals(2, flushedEdits.size());
+        assertFlushed(3, 0, "a", flushedEdits.get(0));
+        assertFlushed(10, 0, "b", flushedEdits.get(1));
+        assertTrue(coalescer.isPending(otherDocument));
+        assertFalse(coalescer.isPending(document));
+    }
+
+    @Test
+    public void flushesAtTheSizeCap() {
+        coalescer.add(document, 0, 0, "0123456789012345678901234567890123456789");
+        coalescer.add(document, 40, 0, "0123456789");
+
+        assertEquals(1, flushedEdits.size());
+        assertEquals(50, flushedEdits.get(0).getAddedCharacters().length());
+    }
+
+    @Test
+    public void mergedEditsMatchTheNaiveApplicationOfEveryKeystroke() {
+        Random random = new Random(19);
+        String base = "public class Main {\n    int value;\n}\n";
+        StringBuilder text = new StringBuilder(base);
+        int cursor = 20;
+        for (int i = 0; i < 5000; i++) {
+            int action = random.nextInt(10);
+            if (action == 0) {
+                cursor = random.nextInt(text.length() + 1);
+            } else if (action <= 2 && cursor > 0) {
+                /* backspace, sometimes of a selection */
+                int removed = random.nextInt(5) == 0 ? Math.min(cursor, 1 + random.nextInt(6)) : 1;
+                cursor -= removed;
+                text.delete(cursor, cursor + removed);
+                coalescer.add(document, cursor, removed, null);
+            } else if (action == 3 && cursor < text.length()) {
+                text.deleteCharAt(cursor);
+                coalescer.add(document, cursor, 1, "");
+            } else {
+                String typed = String.valueOf("abc \n{}".charAt(random.nextInt(7)));
+                text.insert(cursor, typed);
+                coalescer.add(document, cursor, 0, typed);
+                cursor++;
+            }
+            if (random.nextInt(200) == 0) {
+                coalescer.flush();
+            }
+        }
+        coalescer.flush();
+
+        String replayed = base;
+        for (LiveEdit edit : flushedEdits) {
+            replayed = replayed.substring(0, edit.getOffset()) + edit.getAddedCharacters()
+                       + replayed.substring(edit.getOffset() + edit.getRemovedCharCount());
+        }
+        assertEquals(text.toString(), replayed);
+        assertTrue("keystrokes are merged", flushedEdits.size() < 2500);
+    }
+
+    private static void assertFlushed(int offset, int removedCharCount, String addedCharacters, LiveEdit edit) {
+        assertEquals(offset, edit.getOffset());
+        assertEquals(removedCharCount, edit.getRemovedCharCount());
+        assertEquals(addedCharacters, edit.getAddedCharacters());
+    }
+}
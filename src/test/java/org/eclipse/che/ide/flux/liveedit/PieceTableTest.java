@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PieceTableTest {
+
+    @Test
+    public void replacesText() {
+        PieceTable text = new PieceTable("hello world");
+
+        text.replace(5, 6, ", Flux");
+        text.replace(0, 0, ">> ");
+        text.replace(3, 1, "H");
+
+        assertEquals(">> Hello, Flux", text.getText());
+        assertEquals(14, text.length());
+    }
+
+    @Test
+    public void clampsOutOfRangeEdits() {
+        PieceTable text = new PieceTable("abc");
+
+        text.replace(10, 2, "d");
+        text.replace(-1, 1, "");
+        text.replace(2, 10, "");
+
+        assertEquals("bc", text.getText());
+    }
+
+    @Test
+    public void matchesAStringBuilderAfterRandomEdits() {
+        Random random = new Random(11);
+        StringBuilder expected = new StringBuilder("the original text of the document\n");
+        PieceTable text = new PieceTable(expected.toString());
+        for (int i = 0; i < 5000; i++) {
+            int offset = random.nextInt(expected.length() + 1);
+            int removedCharCount = random.nextInt(3) == 0 ? random.nextInt(Math.min(40, expected.length() - offset) + 1) : 0;
+            String addedCharacters = random.nextInt(100) == 0 ? repeat("paste\n", 200) : repeat("x", random.nextInt(5));
+            expected.replace(offset, offset + removedCharCount, addedCharacters);
+            text.replace(offset, removedCharCount, addedCharacters);
+            assertEquals(expected.length(), text.length());
+            if (i % 100 == 0) {
+                assertEquals(expected.toString(), text.getText());
+            }
+            int start = random.nextInt(expected.length() + 1);
+            int end = start + random.nextInt(expected.length() - start + 1);
+            assertEquals(expected.substring(start, end), text.getText(start, end));
+        }
+        assertEquals(expected.toString(), text.getText());
+        /* compacted once the removed characters outweigh the text */
+        assertTrue(text.getSize() <= 2 * text.length() + 1024);
+    }
+
+    private static String repeat(String text, int count) {
+        StringBuilder repeated = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            repeated.append(text);
+        }
+        return repeated.toString();
+    }
+}
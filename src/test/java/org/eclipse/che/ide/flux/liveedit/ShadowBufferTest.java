@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit;
+
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ShadowBufferTest {
+    private ShadowBuffer shadowBuffer;
+
+    @Before
+    public void createShadowBuffer() {
+        shadowBuffer = new ShadowBuffer("project", "src/Main.java", "class Main {}", Collections.singletonMap("bob", 3));
+    }
+
+    @Test
+    public void appliesTheEditsInOrder() {
+        assertTrue(shadowBuffer.apply(new LiveEdit("bob", 4, 12, 0, "int a; ")));
+        assertTrue(shadowBuffer.apply(new LiveEdit("carol", 7, 19, 0, "int b; ")));
+
+        assertEquals("class Main {int a; int b; }", shadowBuffer.getText());
+        assertEquals(Integer.valueOf(4), shadowBuffer.getVersions().get("bob"));
+        assertEquals(Integer.valueOf(7), shadowBuffer.getVersions().get("carol"));
+        assertEquals("/project/src/Main.java", shadowBuffer.getLocation());
+    }
+
+    @Test
+    public void ignoresTheEditsAlreadyApplied() {
+        assertTrue(shadowBuffer.apply(new LiveEdit("bob", 3, 0, 5, "")));
+
+        assertEquals("class Main {}", shadowBuffer.getText());
+    }
+
+    @Test
+    public void refusesAnEditFollowingAGap() {
+        assertFalse(shadowBuffer.apply(new LiveEdit("bob", 5, 0, 0, "x")));
+
+        assertEquals("class Main {}", shadowBuffer.getText());
+        assertEquals(Integer.valueOf(3), shadowBuffer.getVersions().get("bob"));
+    }
+
+    @Test
+    public void followsAPeerNumberingItsEditsFromScratch() {
+        assertTrue(shadowBuffer.apply(new LiveEdit("bob", 1, 0, 0, "public ")));
+        assertTrue(shadowBuffer.apply(new LiveEdit("bob", 2, 0, 0, "/** */ ")));
+
+        assertEquals("/** */ public class Main {}", shadowBuffer.getText());
+        assertEquals(Integer.valueOf(2), shadowBuffer.getVersions().get("bob"));
+    }
+
+    @Test
+    public void resetPeerAcceptsAnySequence() {
+        shadowBuffer.resetPeer("bob");
+
+        assertTrue(shadowBuffer.apply(new LiveEdit("bob", 9, 0, 0, "x")));
+        assertEquals("xclass Main {}", shadowBuffer.getText());
+    }
+}
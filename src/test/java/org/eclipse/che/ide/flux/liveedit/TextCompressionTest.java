@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TextCompressionTest {
+
+    @Test
+    public void compressesSourceCode() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            text.append("    public int getValue").append(i).append("() {\n        return value").append(i).append(";\n    }\n\n");
+        }
+
+        String compressed = assertRoundTrip(text.toString());
+
+        assertTrue(compressed.length() < text.length() / 2);
+    }
+
+    @Test
+    public void decodesACodeDefinedByItsOwnUse() {
+        /* "aaa..." reads back codes defined by the very step that uses them */
+        assertRoundTrip(repeat("a", 5000));
+        assertRoundTrip(repeat("abababa", 1000));
+    }
+
+    @Test
+    public void keepsCharactersBeyondAscii() {
+        assertRoundTrip(repeat("déjà vu – 中文 😀 ", 500));
+    }
+
+    @Test
+    public void widensTheCodesAsTheDictionaryGrows() {
+        /* enough distinct sequences to cross several code widths, up to the full dictionary */
+        Random random = new Random(3);
+        for (int length : new int[]{300, 5000, 60000, 400000}) {
+            StringBuilder text = new StringBuilder();
+            while (text.length() < length) {
+                text.append("word").append(random.nextInt(length / 10)).append(random.nextInt(4) == 0 ? '\n' : ' ');
+            }
+            assertRoundTrip(text.toString());
+        }
+    }
+
+    @Test
+    public void givesUpOnIncompressibleText() {
+        Random random = new Random(5);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            text.append((char)(0x4e00 + random.nextInt(0x5000)));
+        }
+
+        assertNull(TextCompression.compress(text.toString()));
+        assertNull(TextCompression.compress(""));
+    }
+
+    private static String assertRoundTrip(String text) {
+        String compressed = TextCompression.compress(text);
+        assertNotNull(compressed);
+        assertTrue(compressed.length() < text.length());
+        assertEquals(text, TextCompression.decompress(compressed));
+        return compressed;
+    }
+
+    private static String repeat(String text, int count) {
+        StringBuilder repeated = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            repeated.append(text);
+        }
+        return repeated.toString();
+    }
+}
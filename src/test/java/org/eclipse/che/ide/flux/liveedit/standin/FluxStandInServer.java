@@ -0,0 +1,249 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit.standin;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stand-in for the Flux node server and its file service, to exercise the live edit message path
+ * without Docker, RabbitMQ or a network.
+ * <p>
+ * Like Flux, it routes messages between the connections joined to a channel (connectToChannel,
+ * disconnectFromChannel), a message going to the other connections of the channel named by its username.
+ * Only the given events are relayed, the others are dropped as the Flux node server drops the events it does not
+ * know: {@link #STOCK_EVENTS} by default, {@link #PATCHED_EVENTS} for a server patched for this plugin,
+ * which also answers liveEditHello with a liveEditWelcome.
+ * getResourceRequest is answered from the resources it holds, kept up to date with the liveResourceChanged
+ * messages, with a getResourceResponse to the requester only.
+ * Messages are routed by a single thread, in the order they were emitted.
+ */
+public class FluxStandInServer {
+
+    /** A message in transit, the payload being the JSON object as a map. */
+    public static class Message {
+        private final Connection          sender;
+        private final String              type;
+        private final Map<String, Object> payload;
+
+        Message(Connection sender, String type, Map<String, Object> payload) {
+            this.sender = sender;
+            this.type = type;
+            this.payload = payload;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public Map<String, Object> getPayload() {
+            return payload;
+        }
+    }
+
+    /** The server end of a client's socket: what it emits is routed, what is routed to it is queued. */
+    public class Connection {
+        private final BlockingQueue<Message> incoming = new LinkedBlockingQueue<Message>();
+
+        public void emit(String type, Map<String, Object> payload) {
+            emitted.incrementAndGet();
+            routing.add(new Message(this, type, payload));
+        }
+
+        /** The next message routed to this connection, null if none came within the timeout. */
+        public Message poll(long timeout, TimeUnit unit) throws InterruptedException {
+            return incoming.poll(timeout, unit);
+        }
+
+        public boolean hasIncoming() {
+            return !incoming.isEmpty();
+        }
+
+        public void disconnect() {
+            routing.add(new Message(this, DISCONNECT, null));
+        }
+    }
+
+    /** The events of the Flux protocol relayed by the stock node server, as the plugin did before its extensions. */
+    public static final Set<String> STOCK_EVENTS = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+            "getResourceResponse", "resourceChanged", "resourceCreated", "resourceDeleted", "resourceStored",
+            "liveResourceStarted", "liveResourceStartedResponse", "liveResourceChanged", "liveCursorOffsetChanged",
+            "liveMetadataChanged")));
+
+    /** The events added by this plugin, relayed only by a server patched for it. */
+    public static final Set<String> LIVE_EDIT_EVENTS = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+            "liveEditHello", "liveEditResource", "lrc", "lcc", "getLiveResourceOperationsRequest",
+            "liveResourceOperationsResponse", "getLiveResourceRequest", "liveResourceSnapshot", "liveResourceClosed",
+            "liveEditLeave", "liveEditApplied")));
+
+    /** The events relayed by a server patched for this plugin. */
+    public static final Set<String> PATCHED_EVENTS = union(STOCK_EVENTS, LIVE_EDIT_EVENTS);
+
+    private static final String DISCONNECT = "disconnect";
+
+    private final BlockingQueue<Message>       routing   = new LinkedBlockingQueue<Message>();
+    private final Map<String, Set<Connection>> channels  = new HashMap<String, Set<Connection>>();
+    private final Map<String, String>          resources = new ConcurrentHashMap<String, String>();
+    private final Set<String>                  relayedEvents;
+    private final AtomicLong                   emitted   = new AtomicLong();
+    private final AtomicLong                   delivered = new AtomicLong();
+    private final AtomicLong                   dropped   = new AtomicLong();
+    private final Thread                       router;
+    private volatile boolean                   routingMessage;
+
+    /** A stand-in for the stock Flux server, relaying {@link #STOCK_EVENTS} only. */
+    public FluxStandInServer() {
+        this(STOCK_EVENTS);
+    }
+
+    public FluxStandInServer(Set<String> relayedEvents) {
+        this.relayedEvents = new HashSet<String>(relayedEvents);
+        router = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        Message message = routing.take();
+                        routingMessage = true;
+                        route(message);
+                        routingMessage = false;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "flux-stand-in");
+        router.setDaemon(true);
+    }
+
+    public void start() {
+        router.start();
+    }
+
+    public void stop() {
+        router.interrupt();
+    }
+
+    /** Makes a resource available to getResourceRequest, as the file service would. */
+    public void putResource(String project, String resource, String content) {
+        resources.put(project + "/" + resource, content);
+    }
+
+    public Connection connect() {
+        return new Connection();
+    }
+
+    /** Whether every message emitted so far has been routed. */
+    public boolean isIdle() {
+        return routing.isEmpty() && !routingMessage;
+    }
+
+    public long getEmittedCount() {
+        return emitted.get();
+    }
+
+    public long getDeliveredCount() {
+        return delivered.get();
+    }
+
+    /** Number of messages dropped because the server does not relay their event. */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    private void route(Message message) {
+        if (DISCONNECT.equals(message.type)) {
+            for (Set<Connection> members : channels.values()) {
+                members.remove(message.sender);
+            }
+            return;
+        }
+        Map<String, Object> payload = message.payload;
+        if ("connectToChannel".equals(message.type)) {
+            String channel = (String)payload.get("channel");
+            Set<Connection> members = channels.get(channel);
+            if (members == null) {
+                members = new LinkedHashSet<Connection>();
+                channels.put(channel, members);
+            }
+            members.add(message.sender);
+            return;
+        }
+        if ("disconnectFromChannel".equals(message.type)) {
+            Set<Connection> members = channels.get(payload.get("channel"));
+            if (members != null) {
+                members.remove(message.sender);
+            }
+            return;
+        }
+        if ("getResourceRequest".equals(message.type)) {
+            String content = resources.get(payload.get("project") + "/" + payload.get("resource"));
+            if (content != null) {
+                Map<String, Object> response = new HashMap<String, Object>(payload);
+                response.put("content", content);
+                deliver(message.sender, new Message(null, "getResourceResponse", response));
+            }
+            return;
+        }
+        if (!relayedEvents.contains(message.type)) {
+            dropped.incrementAndGet();
+            return;
+        }
+        if ("liveResourceChanged".equals(message.type)) {
+            applyEdit(payload);
+        }
+        if ("liveEditHello".equals(message.type)) {
+            deliver(message.sender, new Message(null, "liveEditWelcome", new HashMap<String, Object>()));
+        }
+        Set<Connection> members = channels.get(payload.get("username"));
+        if (members == null) {
+            return;
+        }
+        for (Connection member : members) {
+            if (member != message.sender) {
+                deliver(member, message);
+            }
+        }
+    }
+
+    /** Keeps the resource up to date, so that a peer getting it afterwards gets the edits sent so far. */
+    private void applyEdit(Map<String, Object> payload) {
+        String key = payload.get("project") + "/" + payload.get("resource");
+        String content = resources.get(key);
+        if (content == null) {
+            return;
+        }
+        int offset = Math.max(0, Math.min((Integer)payload.get("offset"), content.length()));
+        int end = Math.min(offset + (Integer)payload.get("removedCharCount"), content.length());
+        resources.put(key, content.substring(0, offset) + payload.get("addedCharacters") + content.substring(end));
+    }
+
+    private void deliver(Connection connection, Message message) {
+        delivered.incrementAndGet();
+        connection.incoming.add(message);
+    }
+
+    private static Set<String> union(Set<String> events, Set<String> otherEvents) {
+        Set<String> union = new HashSet<String>(events);
+        union.addAll(otherEvents);
+        return Collections.unmodifiableSet(union);
+    }
+}
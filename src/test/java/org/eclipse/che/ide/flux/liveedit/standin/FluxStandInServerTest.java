@@ -0,0 +1,233 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit.standin;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.che.ide.flux.liveedit.CompactProtocol;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FluxStandInServerTest {
+    private FluxStandInServer server;
+
+    @After
+    public void stopServer() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void relaysToTheOtherMembersOfTheChannelOnly() throws InterruptedException {
+        server = start(FluxStandInServer.STOCK_EVENTS);
+        FluxStandInServer.Connection sender = join("USER");
+        FluxStandInServer.Connection member = join("USER");
+        FluxStandInServer.Connection outsider = join("USER/other");
+
+        sender.emit("liveCursorOffsetChanged", payload("USER", "offset", 3));
+
+        FluxStandInServer.Message received = member.poll(1, TimeUnit.SECONDS);
+        assertNotNull(received);
+        assertEquals("liveCursorOffsetChanged", received.getType());
+        assertEquals(3, received.getPayload().get("offset"));
+        awaitIdle();
+        assertFalse(sender.hasIncoming());
+        assertFalse(outsider.hasIncoming());
+    }
+
+    @Test
+    public void stockServerDropsTheLiveEditEvents() throws InterruptedException {
+        server = start(FluxStandInServer.STOCK_EVENTS);
+        FluxStandInServer.Connection sender = join("USER");
+        FluxStandInServer.Connection member = join("USER");
+
+        for (String event : FluxStandInServer.LIVE_EDIT_EVENTS) {
+            sender.emit(event, payload("USER", "offset", 0));
+        }
+        awaitIdle();
+
+        assertFalse(member.hasIncoming());
+        assertFalse("a stock server does not welcome the hello", sender.hasIncoming());
+        assertEquals(FluxStandInServer.LIVE_EDIT_EVENTS.size(), server.getDroppedCount());
+    }
+
+    @Test
+    public void patchedServerRelaysTheLiveEditEventsAndWelcomesTheHello() throws InterruptedException {
+        server = start(FluxStandInServer.PATCHED_EVENTS);
+        FluxStandInServer.Connection sender = join("USER");
+        FluxStandInServer.Connection member = join("USER");
+
+        sender.emit("liveEditHello", payload("USER", "peer", 1));
+        sender.emit("liveResourceSnapshot", payload("USER", "chunk", 0));
+
+        assertEquals("liveEditWelcome", sender.poll(1, TimeUnit.SECONDS).getType());
+        assertEquals("liveEditHello", member.poll(1, TimeUnit.SECONDS).getType());
+        assertEquals("liveResourceSnapshot", member.poll(1, TimeUnit.SECONDS).getType());
+        assertEquals(0, server.getDroppedCount());
+    }
+
+    @Test
+    public void compactMessagesAreRoutedByTheirChannel() throws InterruptedException {
+        server = start(FluxStandInServer.PATCHED_EVENTS);
+        String channel = "USER/project/file.txt";
+        FluxStandInServer.Connection sender = join(channel);
+        FluxStandInServer.Connection member = join(channel);
+        CompactProtocol senderProtocol = new CompactProtocol();
+        CompactProtocol memberProtocol = new CompactProtocol();
+        int peer = senderProtocol.getLocalPeer();
+        int resourceId = senderProtocol.getResourceId("project", "file.txt");
+
+        Map<String, Object> hello = payload(channel, "peer", peer);
+        hello.put("reply", false);
+        sender.emit("liveEditHello", hello);
+        sender.emit("liveEditResource", compact(channel, peer, resourceId, "project", "file.txt"));
+        sender.emit("lrc", compact(channel, peer, resourceId, 1, 5, 6, ", Flux"));
+        sender.emit("lcc", compact(channel, peer, resourceId, 11));
+
+        assertEquals("liveEditWelcome", sender.poll(1, TimeUnit.SECONDS).getType());
+        Map<String, Object> receivedHello = member.poll(1, TimeUnit.SECONDS).getPayload();
+        memberProtocol.helloReceived((Integer)receivedHello.get("peer"), (String)receivedHello.get("channelName"), "member", false);
+        List<?> definition = data(member.poll(1, TimeUnit.SECONDS), "liveEditResource");
+        memberProtocol.resourceDefined((Integer)definition.get(0), (Integer)definition.get(1), (String)definition.get(2),
+                                       (String)definition.get(3));
+
+        List<?> edit = data(member.poll(1, TimeUnit.SECONDS), "lrc");
+        assertEquals("sender", memberProtocol.getPeer((Integer)edit.get(0)));
+        assertArrayEquals(new String[]{"project", "file.txt"}, memberProtocol.getResource((Integer)edit.get(0), (Integer)edit.get(1)));
+        assertEquals(Arrays.<Object>asList(1, 5, 6, ", Flux"), edit.subList(2, 6));
+        List<?> cursor = data(member.poll(1, TimeUnit.SECONDS), "lcc");
+        assertEquals(11, cursor.get(2));
+        assertEquals(0, server.getDroppedCount());
+    }
+
+    @Test
+    public void stockServerRelaysTheSnapshotExchange() throws InterruptedException {
+        server = start(FluxStandInServer.STOCK_EVENTS);
+        FluxStandInServer.Connection requester = join("USER");
+        FluxStandInServer.Connection reference = join("USER");
+
+        Map<String, Object> request = payload("USER", "channelName", "requester");
+        request.put("peer", "reference");
+        requester.emit("liveResourceStarted", request);
+        FluxStandInServer.Message receivedRequest = reference.poll(1, TimeUnit.SECONDS);
+        assertEquals("liveResourceStarted", receivedRequest.getType());
+        assertEquals("reference", receivedRequest.getPayload().get("peer"));
+
+        Map<String, Object> snapshot = payload("USER", "channelName", "reference");
+        snapshot.put("peer", "requester");
+        snapshot.put("chunk", 0);
+        snapshot.put("chunkCount", 1);
+        snapshot.put("content", "hello, Flux");
+        reference.emit("liveResourceStartedResponse", snapshot);
+        FluxStandInServer.Message receivedSnapshot = requester.poll(1, TimeUnit.SECONDS);
+        assertEquals("liveResourceStartedResponse", receivedSnapshot.getType());
+        assertEquals("hello, Flux", receivedSnapshot.getPayload().get("content"));
+        assertEquals(0, server.getDroppedCount());
+    }
+
+    @Test
+    public void leftChannelIsNoLongerReceived() throws InterruptedException {
+        server = start(FluxStandInServer.STOCK_EVENTS);
+        FluxStandInServer.Connection sender = join("USER");
+        FluxStandInServer.Connection member = join("USER");
+
+        Map<String, Object> leave = new HashMap<String, Object>();
+        leave.put("channel", "USER");
+        member.emit("disconnectFromChannel", leave);
+        sender.emit("liveCursorOffsetChanged", payload("USER", "offset", 3));
+        awaitIdle();
+
+        assertFalse(member.hasIncoming());
+    }
+
+    @Test
+    public void resourceIsServedWithTheEditsRelayedSoFar() throws InterruptedException {
+        server = start(FluxStandInServer.STOCK_EVENTS);
+        server.putResource("project", "file.txt", "hello world");
+        FluxStandInServer.Connection editor = join("USER");
+
+        Map<String, Object> edit = payload("USER", "offset", 5);
+        edit.put("project", "project");
+        edit.put("resource", "file.txt");
+        edit.put("removedCharCount", 6);
+        edit.put("addedCharacters", ", Flux");
+        editor.emit("liveResourceChanged", edit);
+
+        FluxStandInServer.Connection newcomer = join("USER");
+        Map<String, Object> request = payload("USER", "project", "project");
+        request.put("resource", "file.txt");
+        newcomer.emit("getResourceRequest", request);
+
+        FluxStandInServer.Message response = newcomer.poll(1, TimeUnit.SECONDS);
+        assertEquals("getResourceResponse", response.getType());
+        assertEquals("hello, Flux", response.getPayload().get("content"));
+        assertNull(newcomer.poll(0, TimeUnit.SECONDS));
+        assertTrue(server.getDeliveredCount() >= 1);
+    }
+
+    private FluxStandInServer start(Set<String> relayedEvents) {
+        FluxStandInServer started = new FluxStandInServer(relayedEvents);
+        started.start();
+        return started;
+    }
+
+    private FluxStandInServer.Connection join(String channel) throws InterruptedException {
+        FluxStandInServer.Connection connection = server.connect();
+        Map<String, Object> connect = new HashMap<String, Object>();
+        connect.put("channel", channel);
+        connection.emit("connectToChannel", connect);
+        awaitIdle();
+        return connection;
+    }
+
+    private void awaitIdle() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 1000;
+        while (!server.isIdle() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertTrue(server.isIdle());
+    }
+
+    /** A compact message as the plugin builds it: routed by its username, its data being positional. */
+    private static Map<String, Object> compact(String channel, Object... data) {
+        Map<String, Object> payload = new HashMap<String, Object>();
+        payload.put("username", channel);
+        payload.put("d", Arrays.asList(data));
+        return payload;
+    }
+
+    private static List<?> data(FluxStandInServer.Message message, String type) {
+        assertNotNull(message);
+        assertEquals(type, message.getType());
+        return (List<?>)message.getPayload().get("d");
+    }
+
+    private static Map<String, Object> payload(String channel, String name, Object value) {
+        Map<String, Object> payload = new HashMap<String, Object>();
+        payload.put("username", channel);
+        payload.put("channelName", "sender");
+        payload.put(name, value);
+        return payload;
+    }
+}
@@ -0,0 +1,273 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit.standin;
+
+import org.eclipse.che.ide.flux.liveedit.LiveEditConfiguration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Runs synthetic peers editing resources through a {@link FluxStandInServer} and measures them, see
+ * {@link LoadReport}. Every typist makes the same number of edits and every peer the same number of cursor moves,
+ * paced at the given rates, so that the counts do not depend on the speed of the machine. The tests run it briefly;
+ * longer runs can be made with the main method:
+ * <pre>
+ * java org.eclipse.che.ide.flux.liveedit.standin.LoadGenerator --peers=8 --typists=1 --edits=100 --edit-rate=10
+ * </pre>
+ * The peers are spread over the resources, and the messages travel on the workspace channel or, with resource
+ * channels, on a channel per resource as with the plugin's RESOURCE channel scope.
+ * Flux does not transform concurrent edits, so the texts may diverge when several peers type at once: a single
+ * typist checks convergence, more measure the load.
+ */
+public class LoadGenerator {
+    static final String PROJECT  = "project";
+    static final String RESOURCE = "src/Main.java";
+    static final String CHANNEL  = "USER";
+
+    private int         peerCount        = 8;
+    private int         typistCount      = 1;
+    private int         resourceCount    = 1;
+    private boolean     resourceChannels;
+    private int         editCount        = 100;
+    private int         cursorMoveCount  = 20;
+    private double      editRate         = 10;
+    private double      cursorRate       = 2;
+    private double      pasteRatio       = 0.001;
+    private int         documentLines    = 1000;
+    private long        seed             = 42;
+    private Set<String> relayedEvents    = FluxStandInServer.STOCK_EVENTS;
+    private boolean     compactProtocol;
+    private int         coalescingWindow = LiveEditConfiguration.DEFAULT_EDIT_COALESCING_WINDOW;
+
+    public LoadGenerator withPeers(int peerCount) {
+        this.peerCount = peerCount;
+        return this;
+    }
+
+    /** Number of peers typing, the first ones; the others only move their cursors. */
+    public LoadGenerator withTypists(int typistCount) {
+        this.typistCount = typistCount;
+        return this;
+    }
+
+    /** Number of resources edited, peer i editing resource i modulo the count. */
+    public LoadGenerator withResources(int resourceCount) {
+        this.resourceCount = resourceCount;
+        return this;
+    }
+
+    /** Whether every resource travels on its own channel rather than on the workspace channel. */
+    public LoadGenerator withResourceChannels(boolean resourceChannels) {
+        this.resourceChannels = resourceChannels;
+        return this;
+    }
+
+    /** Number of edits every typist makes. */
+    public LoadGenerator withEdits(int editCount) {
+        this.editCount = editCount;
+        return this;
+    }
+
+    /** Number of cursor moves every peer makes. */
+    public LoadGenerator withCursorMoves(int cursorMoveCount) {
+        this.cursorMoveCount = cursorMoveCount;
+        return this;
+    }
+
+    /** Edits per second of every typist, as fast as possible if not positive. */
+    public LoadGenerator withEditRate(double editRate) {
+        this.editRate = editRate;
+        return this;
+    }
+
+    /** Cursor moves per second of every peer, as fast as possible if not positive. */
+    public LoadGenerator withCursorRate(double cursorRate) {
+        this.cursorRate = cursorRate;
+        return this;
+    }
+
+    /** Share of the edits that are large pastes. */
+    public LoadGenerator withPasteRatio(double pasteRatio) {
+        this.pasteRatio = pasteRatio;
+        return this;
+    }
+
+    /** How long the typing is merged into a single edit, in milliseconds, see {@link LiveEditConfiguration}. */
+    public LoadGenerator withCoalescingWindow(int coalescingWindow) {
+        this.coalescingWindow = coalescingWindow;
+        return this;
+    }
+
+    public LoadGenerator withDocumentLines(int documentLines) {
+        this.documentLines = documentLines;
+        return this;
+    }
+
+    public LoadGenerator withSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /** The events the server relays, see {@link FluxStandInServer#STOCK_EVENTS}. */
+    public LoadGenerator withRelayedEvents(Set<String> relayedEvents) {
+        this.relayedEvents = relayedEvents;
+        return this;
+    }
+
+    /**
+     * Whether the peers send compact messages, which takes a server relaying them: otherwise they send verbose
+     * ones, as the plugin does.
+     */
+    public LoadGenerator withCompactProtocol(boolean compactProtocol) {
+        this.compactProtocol = compactProtocol;
+        return this;
+    }
+
+    public LoadReport run() throws InterruptedException {
+        FluxStandInServer server = new FluxStandInServer(relayedEvents);
+        for (int i = 0; i < resourceCount; i++) {
+            server.putResource(PROJECT, getResource(i), createDocument(documentLines));
+        }
+        server.start();
+
+        LiveEditConfiguration configuration = new LiveEditConfiguration().withEditCoalescingWindow(coalescingWindow);
+        List<SyntheticPeer> peers = new ArrayList<SyntheticPeer>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < peerCount; i++) {
+            boolean typist = i < typistCount;
+            String resource = getResource(i % resourceCount);
+            String channel = resourceChannels ? CHANNEL + "/" + PROJECT + "/" + resource : CHANNEL;
+            SyntheticPeer peer = new SyntheticPeer(server.connect(), channel, PROJECT, resource, "peer-" + i, typist ? editCount : 0,
+                                                   cursorMoveCount, editRate, cursorRate, pasteRatio, configuration, compactProtocol,
+                                                   seed + i);
+            Thread thread = new Thread(peer, peer.getPeer());
+            thread.setDaemon(true);
+            peers.add(peer);
+            threads.add(thread);
+        }
+        try {
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            for (SyntheticPeer peer : peers) {
+                while (!peer.isReady()) {
+                    Thread.sleep(1);
+                }
+            }
+            while (!isIdle(server, peers)) {
+                Thread.sleep(1);
+            }
+
+            /* the counts include the messages still in transit when the typing stops */
+            long emittedBefore = server.getEmittedCount();
+            long deliveredBefore = server.getDeliveredCount();
+            long droppedBefore = server.getDroppedCount();
+            long start = System.nanoTime();
+            for (SyntheticPeer peer : peers) {
+                peer.startTyping();
+            }
+            for (SyntheticPeer peer : peers) {
+                while (!peer.isDone()) {
+                    Thread.sleep(1);
+                }
+            }
+            double elapsed = (System.nanoTime() - start) / 1e9;
+
+            long quiescence = System.nanoTime();
+            while (!isIdle(server, peers)) {
+                Thread.sleep(10);
+            }
+            double drainTime = (System.nanoTime() - quiescence) / 1e6;
+            return new LoadReport(peers, elapsed, server.getEmittedCount() - emittedBefore, server.getDeliveredCount() - deliveredBefore,
+                                  server.getDroppedCount() - droppedBefore, drainTime);
+        } finally {
+            for (SyntheticPeer peer : peers) {
+                peer.stop();
+            }
+            for (Thread thread : threads) {
+                thread.join(1000);
+            }
+            server.stop();
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = parseOptions(args);
+        LoadGenerator generator = new LoadGenerator();
+        generator.withPeers(Integer.parseInt(option(options, "peers", "8")));
+        generator.withTypists(Integer.parseInt(option(options, "typists", "1")));
+        generator.withEdits(Integer.parseInt(option(options, "edits", "100")));
+        generator.withCursorMoves(Integer.parseInt(option(options, "cursor-moves", "20")));
+        generator.withEditRate(Double.parseDouble(option(options, "edit-rate", "10")));
+        generator.withResources(Integer.parseInt(option(options, "resources", "1")));
+        generator.withResourceChannels(Boolean.parseBoolean(option(options, "resource-channels", "false")));
+        generator.withCursorRate(Double.parseDouble(option(options, "cursor-rate", "2")));
+        generator.withPasteRatio(Double.parseDouble(option(options, "paste-ratio", "0.001")));
+        generator.withCoalescingWindow(Integer.parseInt(option(options, "coalescing-window", Integer.toString(generator.coalescingWindow))));
+        generator.withDocumentLines(Integer.parseInt(option(options, "document-lines", "1000")));
+        generator.withSeed(Long.parseLong(option(options, "seed", "42")));
+        if (Boolean.parseBoolean(option(options, "patched-server", "false"))) {
+            generator.withRelayedEvents(FluxStandInServer.PATCHED_EVENTS);
+        }
+        generator.withCompactProtocol(Boolean.parseBoolean(option(options, "compact-protocol", "false")));
+        if (!options.isEmpty()) {
+            throw new IllegalArgumentException("Unknown options " + options.keySet());
+        }
+        System.out.println(generator.run());
+    }
+
+    private static boolean isIdle(FluxStandInServer server, List<SyntheticPeer> peers) {
+        /* twice, the peers being checked while the server may still route */
+        for (int i = 0; i < 2; i++) {
+            if (!server.isIdle()) {
+                return false;
+            }
+            for (SyntheticPeer peer : peers) {
+                if (!peer.isIdle()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    static String getResource(int index) {
+        return index == 0 ? RESOURCE : "src/Main" + index + ".java";
+    }
+
+    static String createDocument(int lines) {
+        StringBuilder document = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            document.append("    // line ").append(i).append(" of the shared document\n");
+        }
+        return document.toString();
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<String, String>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        return options;
+    }
+
+    private static String option(Map<String, String> options, String name, String defaultValue) {
+        String value = options.remove(name);
+        return value != null ? value : defaultValue;
+    }
+}
@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit.standin;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Short load runs through the stand-in server, the peers making their edits and cursor moves as fast as they can.
+ * The delays are not asserted, they depend on the machine: run the generator's main method to measure them.
+ */
+public class LoadGeneratorTest {
+
+    @Test
+    public void singleTypistConverges() throws InterruptedException {
+        LoadReport report = new LoadGenerator().withPeers(6).withTypists(1).withEdits(200).withCursorMoves(20).withEditRate(0)
+                                               .withCursorRate(0).withPasteRatio(0.05).withDocumentLines(200).run();
+
+        assertEquals(200, report.getTypedEdits());
+        assertTrue("the typing is merged", report.getSentEdits() > 0 && report.getSentEdits() < report.getTypedEdits());
+        assertEquals(6 * 20, report.getSentCursorMoves());
+        assertEquals(0, report.getGaps());
+        assertEquals(0, report.getOutOfRangeEdits());
+        assertEquals("every other peer applied every edit", report.getSentEdits() * 5, report.getEditDelays().size());
+        assertEquals(report.getSentCursorMoves() * 5, report.getCursorDelays().size());
+        assertTrue(report.toString(), report.isConverged());
+        assertEquals(1, report.getDistinctChecksumCount());
+    }
+
+    @Test
+    public void concurrentTypistsKeepTheirEditsInOrder() throws InterruptedException {
+        LoadReport report = new LoadGenerator().withPeers(8).withTypists(4).withEdits(100).withEditRate(0).withCursorRate(0).run();
+
+        assertEquals(400, report.getTypedEdits());
+        assertEquals(0, report.getGaps());
+        assertEquals(report.getSentEdits() * 7, report.getEditDelays().size());
+        /* without transformation the texts may diverge, but the checksums must tell them apart */
+        assertEquals(report.getDistinctTextCount(), report.getDistinctChecksumCount());
+    }
+
+    @Test
+    public void stockServerRelaysTheEditsAndCursors() throws InterruptedException {
+        LoadReport report = new LoadGenerator().withPeers(3).withEdits(50).withEditRate(0).withCursorRate(0).run();
+
+        assertEquals(0, report.getDroppedCount());
+        assertEquals(report.getEmittedCount() * 2, report.getDeliveredCount());
+    }
+
+    @Test
+    public void compactMessagesConverge() throws InterruptedException {
+        LoadReport report = new LoadGenerator().withPeers(4).withTypists(1).withEdits(200).withCursorMoves(10).withEditRate(0)
+                                               .withCursorRate(0).withDocumentLines(200)
+                                               .withRelayedEvents(FluxStandInServer.PATCHED_EVENTS).withCompactProtocol(true).run();
+
+        assertEquals(0, report.getDroppedCount());
+        assertEquals(0, report.getGaps());
+        assertEquals(report.getSentEdits() * 3, report.getEditDelays().size());
+        assertEquals(report.getSentCursorMoves() * 3, report.getCursorDelays().size());
+        assertTrue(report.toString(), report.isConverged());
+        assertEquals(1, report.getDistinctChecksumCount());
+    }
+
+    @Test
+    public void resourceChannelsOnlyDeliverToThePeersOfTheResource() throws InterruptedException {
+        LoadGenerator generator = new LoadGenerator().withPeers(8).withTypists(8).withResources(4).withEdits(20).withEditRate(0)
+                                                     .withCursorRate(0);
+        LoadReport workspace = generator.withResourceChannels(false).run();
+        LoadReport resource = generator.withResourceChannels(true).run();
+
+        /* two peers per resource: on the workspace channel a message reaches the 7 others, 6 of them dropping it */
+        assertEquals(workspace.getEmittedCount() * 7, workspace.getDeliveredCount());
+        assertEquals(workspace.getEmittedCount() * 6, workspace.getIgnoredMessages());
+        assertEquals(resource.getEmittedCount(), resource.getDeliveredCount());
+        assertEquals(0, resource.getIgnoredMessages());
+        assertEquals(0, resource.getGaps());
+    }
+}
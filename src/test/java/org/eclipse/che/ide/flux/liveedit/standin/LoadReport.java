@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit.standin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * What a {@link LoadGenerator} run measured: the message throughput, the delays until edits and cursor moves are
+ * applied by the other peers, and whether the peers ended with the same text. Delays are in milliseconds.
+ */
+public class LoadReport {
+    private final int          peerCount;
+    private final double       elapsed;
+    private final long         emitted;
+    private final long         delivered;
+    private final long         dropped;
+    private final double       drainTime;
+    private final List<Double> editDelays   = new ArrayList<Double>();
+    private final List<Double> cursorDelays = new ArrayList<Double>();
+    private final Set<String>  texts        = new HashSet<String>();
+    private final Set<Integer> checksums    = new HashSet<Integer>();
+    private int                typedEdits;
+    private int                sentEdits;
+    private int                sentCursorMoves;
+    private int                gaps;
+    private int                outOfRangeEdits;
+    private int                ignoredMessages;
+
+    LoadReport(List<SyntheticPeer> peers, double elapsed, long emitted, long delivered, long dropped, double drainTime) {
+        this.peerCount = peers.size();
+        this.elapsed = elapsed;
+        this.emitted = emitted;
+        this.delivered = delivered;
+        this.dropped = dropped;
+        this.drainTime = drainTime;
+        for (SyntheticPeer peer : peers) {
+            editDelays.addAll(peer.getEditDelays());
+            cursorDelays.addAll(peer.getCursorDelays());
+            typedEdits += peer.getTypedEdits();
+            sentEdits += peer.getSentEdits();
+            sentCursorMoves += peer.getSentCursorMoves();
+            gaps += peer.getGaps();
+            outOfRangeEdits += peer.getOutOfRangeEdits();
+            ignoredMessages += peer.getIgnoredMessages();
+            texts.add(peer.getText());
+            checksums.add(peer.getChecksum());
+        }
+        Collections.sort(editDelays);
+        Collections.sort(cursorDelays);
+    }
+
+    public int getPeerCount() {
+        return peerCount;
+    }
+
+    /** Duration of the typing, in seconds. */
+    public double getElapsed() {
+        return elapsed;
+    }
+
+    /** Edits made by the typists, before they are merged. */
+    public int getTypedEdits() {
+        return typedEdits;
+    }
+
+    /** Edits sent, once merged. */
+    public int getSentEdits() {
+        return sentEdits;
+    }
+
+    public int getSentCursorMoves() {
+        return sentCursorMoves;
+    }
+
+    /** Messages emitted by the peers from the start of the typing. */
+    public long getEmittedCount() {
+        return emitted;
+    }
+
+    /** Messages the server delivered to the peers from the start of the typing. */
+    public long getDeliveredCount() {
+        return delivered;
+    }
+
+    /** Messages the server did not relay, their event being unknown to it. */
+    public long getDroppedCount() {
+        return dropped;
+    }
+
+    /** Edits applied by the other peers, in the order of their delays. */
+    public List<Double> getEditDelays() {
+        return editDelays;
+    }
+
+    public List<Double> getCursorDelays() {
+        return cursorDelays;
+    }
+
+    public double getEditDelay(double rank) {
+        return percentile(editDelays, rank);
+    }
+
+    public double getCursorDelay(double rank) {
+        return percentile(cursorDelays, rank);
+    }
+
+    /** How long the messages still in transit took to be applied once the peers stopped typing. */
+    public double getDrainTime() {
+        return drainTime;
+    }
+
+    /** Edits received out of order. */
+    public int getGaps() {
+        return gaps;
+    }
+
+    /** Edits received that did not fit the text, a sign that the peers' texts have diverged. */
+    public int getOutOfRangeEdits() {
+        return outOfRangeEdits;
+    }
+
+    /** Messages delivered to peers that do not edit their resource. */
+    public int getIgnoredMessages() {
+        return ignoredMessages;
+    }
+
+    public int getDistinctTextCount() {
+        return texts.size();
+    }
+
+    public int getDistinctChecksumCount() {
+        return checksums.size();
+    }
+
+    public boolean isConverged() {
+        return texts.size() == 1;
+    }
+
+    @Override
+    public String toString() {
+        return "peers:            " + peerCount + "\n"
+               + "duration:         " + format(elapsed) + " s\n"
+               + "sent:             " + sentEdits + " edits (" + typedEdits + " typed), " + sentCursorMoves + " cursor moves\n"
+               + "messages in:      " + format(emitted / elapsed) + " /s\n"
+               + "messages out:     " + format(delivered / elapsed) + " /s (" + ignoredMessages + " about other resources)\n"
+               + "dropped:          " + dropped + "\n"
+               + "edit delay:       " + percentiles(editDelays) + "\n"
+               + "cursor delay:     " + percentiles(cursorDelays) + "\n"
+               + "drained in:       " + format(drainTime) + " ms\n"
+               + "out of order:     " + gaps + "\n"
+               + "out of range:     " + outOfRangeEdits + "\n"
+               + "distinct texts:   " + texts.size() + " (" + checksums.size() + " distinct checksums)\n"
+               + (isConverged() ? "converged" : "DIVERGED");
+    }
+
+    private static String percentiles(List<Double> sortedDelays) {
+        if (sortedDelays.isEmpty()) {
+            return "none";
+        }
+        return "p50 " + format(percentile(sortedDelays, 0.5)) + " ms, p99 " + format(percentile(sortedDelays, 0.99)) + " ms, max "
+               + format(sortedDelays.get(sortedDelays.size() - 1)) + " ms (" + sortedDelays.size() + " applied)";
+    }
+
+    private static double percentile(List<Double> sortedDelays, double rank) {
+        if (sortedDelays.isEmpty()) {
+            return 0;
+        }
+        return sortedDelays.get(Math.min(sortedDelays.size() - 1, (int)(rank * sortedDelays.size())));
+    }
+
+    private static String format(double value) {
+        return Double.toString(Math.round(value * 100) / 100.0);
+    }
+}
@@ -0,0 +1,471 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Serli SAS.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *   Sun Seng David TAN <sunix@sunix.org> - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.che.ide.flux.liveedit.standin;
+
+import org.eclipse.che.ide.api.editor.document.Document;
+import org.eclipse.che.ide.flux.liveedit.CompactProtocol;
+import org.eclipse.che.ide.flux.liveedit.DocumentChecksum;
+import org.eclipse.che.ide.flux.liveedit.EditSequencer;
+import org.eclipse.che.ide.flux.liveedit.LiveEdit;
+import org.eclipse.che.ide.flux.liveedit.LiveEditConfiguration;
+import org.eclipse.che.ide.flux.liveedit.OutgoingEditCoalescer;
+import org.eclipse.che.ide.flux.liveedit.PieceTable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * A peer editing a resource through a {@link FluxStandInServer}: it joins the channel, gets the resource, then, once
+ * told to start, makes the given number of edits and cursor moves at the given rates while applying the edits of
+ * the other peers as they come.
+ * <p>
+ * It runs the plugin's own classes wherever they do not need a browser: its keystrokes go through an
+ * {@link OutgoingEditCoalescer}, its edits are numbered and the received ones ordered by an {@link EditSequencer},
+ * the compact messages are encoded with a {@link CompactProtocol}, and its text is kept in a {@link PieceTable}
+ * with a {@link DocumentChecksum}, as the plugin does for shadow buffers. Only the messages themselves, built with
+ * JSNI by the plugin, are written here: with the same fields, plus the time they were sent so that the delay until
+ * they are applied can be measured.
+ */
+public class SyntheticPeer implements Runnable {
+    private static final String CHARACTERS   = "abcdefghijklmnopqrstuvwxyz     \n";
+    private static final int    PASTE_SIZE   = 2000;
+    private static final int    HISTORY_SIZE = 1000;
+
+    private final FluxStandInServer.Connection connection;
+    private final String                       channel;
+    private final String                       project;
+    private final String                       resource;
+    private final String                       peer;
+    private final int                          editCount;
+    private final int                          cursorMoveCount;
+    private final double                       editRate;
+    private final double                       cursorRate;
+    private final double                       pasteRatio;
+    private final boolean                      compact;
+    private final Random                       random;
+    private final Document                     document         = mock(Document.class);
+    private final OutgoingEditCoalescer        coalescer;
+    private final EditSequencer                sequencer        = new EditSequencer(HISTORY_SIZE);
+    private final CompactProtocol              protocol         = new CompactProtocol();
+    private final DocumentChecksum             checksum         = new DocumentChecksum();
+    private final List<Double>                 editDelays       = new ArrayList<Double>();
+    private final List<Double>                 cursorDelays     = new ArrayList<Double>();
+    private PieceTable                         text;
+    private int                                cursor;
+    private long                               flushTime        = Long.MAX_VALUE;
+    private int                                typedEdits;
+    private int                                sentEdits;
+    private int                                sentCursorMoves;
+    private int                                gaps;
+    private int                                outOfRangeEdits;
+    private int                                ignoredMessages;
+    private volatile boolean                   started;
+    private volatile boolean                   running          = true;
+    private volatile boolean                   ready;
+    private volatile boolean                   done;
+
+    public SyntheticPeer(FluxStandInServer.Connection connection, String channel, String project, String resource, String peer,
+                         int editCount, int cursorMoveCount, double editRate, double cursorRate, double pasteRatio,
+                         LiveEditConfiguration configuration, boolean compact, long seed) {
+        this.connection = connection;
+        this.channel = channel;
+        this.project = project;
+        this.resource = resource;
+        this.peer = peer;
+        this.editCount = editCount;
+        this.cursorMoveCount = cursorMoveCount;
+        this.editRate = editRate;
+        this.cursorRate = cursorRate;
+        this.pasteRatio = pasteRatio;
+        this.compact = compact;
+        this.random = new Random(seed);
+        this.coalescer = new OutgoingEditCoalescer(configuration, new OutgoingEditCoalescer.FlushHandler() {
+            @Override
+            public void onFlush(Document flushedDocument, int offset, int removedCharCount, String addedCharacters) {
+                send(offset, removedCharCount, addedCharacters);
+            }
+        }) {
+            @Override
+            protected void scheduleFlush(int delay) {
+                flushTime = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+            }
+        };
+    }
+
+    @Override
+    public void run() {
+        try {
+            join();
+            while (running && !started) {
+                receiveAll(connection.poll(1, TimeUnit.MILLISECONDS));
+            }
+            long nextEdit = nextTime(System.nanoTime(), editRate);
+            long nextCursorMove = nextTime(System.nanoTime(), cursorRate);
+            while (running) {
+                long now = System.nanoTime();
+                if (typedEdits < editCount && now >= nextEdit) {
+                    edit();
+                    nextEdit = nextTime(nextEdit, editRate);
+                }
+                if (sentCursorMoves < cursorMoveCount && now >= nextCursorMove) {
+                    moveCursor();
+                    nextCursorMove = nextTime(nextCursorMove, cursorRate);
+                }
+                if (now >= flushTime) {
+                    flush();
+                }
+                if (!done && typedEdits == editCount && sentCursorMoves == cursorMoveCount) {
+                    flush();
+                    done = true;
+                }
+                long next = done ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(10) : flushTime;
+                if (typedEdits < editCount) {
+                    next = Math.min(next, nextEdit);
+                }
+                if (sentCursorMoves < cursorMoveCount) {
+                    next = Math.min(next, nextCursorMove);
+                }
+                receiveAll(connection.poll(Math.max(0, next - System.nanoTime()), TimeUnit.NANOSECONDS));
+            }
+            Map<String, Object> leave = new HashMap<String, Object>();
+            leave.put("channel", channel);
+            connection.emit("disconnectFromChannel", leave);
+            connection.disconnect();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Starts editing and moving the cursor, the peer being ready. */
+    public void startTyping() {
+        started = true;
+    }
+
+    public void stop() {
+        running = false;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /** Whether every edit and cursor move has been made and sent. */
+    public boolean isDone() {
+        return done;
+    }
+
+    /** Whether every message routed to this peer has been applied. */
+    public boolean isIdle() {
+        return !connection.hasIncoming();
+    }
+
+    public String getPeer() {
+        return peer;
+    }
+
+    public synchronized String getText() {
+        return text.getText();
+    }
+
+    public synchronized int getChecksum() {
+        return checksum.getValue();
+    }
+
+    public synchronized List<Double> getEditDelays() {
+        return new ArrayList<Double>(editDelays);
+    }
+
+    public synchronized List<Double> getCursorDelays() {
+        return new ArrayList<Double>(cursorDelays);
+    }
+
+    /** Number of edits made, before the coalescer merges them. */
+    public synchronized int getTypedEdits() {
+        return typedEdits;
+    }
+
+    /** Number of edits sent, once merged by the coalescer. */
+    public synchronized int getSentEdits() {
+        return sentEdits;
+    }
+
+    public synchronized int getSentCursorMoves() {
+        return sentCursorMoves;
+    }
+
+    /** Number of edits held back after a gap: the stand-in should keep every peer's edits in order. */
+    public synchronized int getGaps() {
+        return gaps;
+    }
+
+    /** Number of edits received that did not fit the text, a sign that the peers' texts have diverged. */
+    public synchronized int getOutOfRangeEdits() {
+        return outOfRangeEdits;
+    }
+
+    /** Number of messages received about other resources, to be dropped. */
+    public synchronized int getIgnoredMessages() {
+        return ignoredMessages;
+    }
+
+    private void join() throws InterruptedException {
+        Map<String, Object> connect = new HashMap<String, Object>();
+        connect.put("channel", channel);
+        connection.emit("connectToChannel", connect);
+        if (compact) {
+            sayHello(false);
+        }
+
+        Map<String, Object> request = new HashMap<String, Object>();
+        request.put("username", channel);
+        request.put("project", project);
+        request.put("resource", resource);
+        request.put("channelName", peer);
+        connection.emit("getResourceRequest", request);
+
+        /* the edits sent before the content are already part of it */
+        FluxStandInServer.Message message = connection.poll(10, TimeUnit.SECONDS);
+        while (message != null && !"getResourceResponse".equals(message.getType())) {
+            receiveControl(message);
+            message = connection.poll(10, TimeUnit.SECONDS);
+        }
+        if (message == null) {
+            throw new IllegalStateException(peer + " got no response to getResourceRequest");
+        }
+        String content = (String)message.getPayload().get("content");
+        synchronized (this) {
+            text = new PieceTable(content);
+            checksum.reset(content);
+        }
+        ready = true;
+    }
+
+    private synchronized void edit() {
+        int length = text.length();
+        cursor = Math.min(cursor, length);
+        int removedCharCount = 0;
+        String addedCharacters = "";
+        if (random.nextDouble() < pasteRatio) {
+            addedCharacters = randomCharacters(PASTE_SIZE);
+        } else if (length > 0 && random.nextInt(5) == 0) {
+            /* backspace */
+            if (cursor == 0) {
+                cursor = 1;
+            }
+            cursor--;
+            removedCharCount = 1;
+        } else {
+            addedCharacters = randomCharacters(1);
+        }
+        int offset = cursor;
+        apply(offset, removedCharCount, addedCharacters);
+        cursor += addedCharacters.length();
+        typedEdits++;
+        coalescer.add(document, offset, removedCharCount, addedCharacters);
+    }
+
+    private synchronized void flush() {
+        flushTime = Long.MAX_VALUE;
+        coalescer.flush();
+    }
+
+    /** Sends an edit flushed by the coalescer. */
+    private void send(int offset, int removedCharCount, String addedCharacters) {
+        LiveEdit edit = sequencer.recordLocalEdit(peer, offset, removedCharCount, addedCharacters);
+        if (compact && protocol.canSend()) {
+            int resourceId = announceResource();
+            connection.emit("lrc", compact(protocol.getLocalPeer(), resourceId, edit.getSequence(), offset, removedCharCount,
+                                           addedCharacters, null, null, now()));
+        } else {
+            Map<String, Object> payload = verbose();
+            payload.put("offset", offset);
+            payload.put("removedCharCount", removedCharCount);
+            payload.put("addedCharacters", addedCharacters);
+            payload.put("sequence", edit.getSequence());
+            payload.put("time", now());
+            connection.emit("liveResourceChanged", payload);
+        }
+        sentEdits++;
+    }
+
+    private synchronized void moveCursor() {
+        /* the cursor jumps: what was typed so far goes out first */
+        flush();
+        cursor = random.nextInt(text.length() + 1);
+        if (compact && protocol.canSend()) {
+            /* the send time is appended to the data, which the plugin ignores */
+            connection.emit("lcc", compact(protocol.getLocalPeer(), announceResource(), cursor, now()));
+        } else {
+            Map<String, Object> payload = verbose();
+            payload.put("offset", cursor);
+            payload.put("time", now());
+            connection.emit("liveCursorOffsetChanged", payload);
+        }
+        sentCursorMoves++;
+    }
+
+    private void receiveAll(FluxStandInServer.Message message) throws InterruptedException {
+        while (message != null) {
+            receive(message);
+            message = connection.poll(0, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private synchronized void receive(FluxStandInServer.Message message) {
+        if (receiveControl(message)) {
+            return;
+        }
+        Map<String, Object> payload = message.getPayload();
+        List<?> data = (List<?>)payload.get("d");
+        String sender;
+        String[] editedResource;
+        if (data != null) {
+            sender = protocol.getPeer((Integer)data.get(0));
+            editedResource = protocol.getResource((Integer)data.get(0), (Integer)data.get(1));
+            if (editedResource == null && protocol.announcementsMissed((Integer)data.get(0))) {
+                sayHello(false);
+            }
+        } else {
+            sender = (String)payload.get("channelName");
+            editedResource = new String[]{(String)payload.get("project"), (String)payload.get("resource")};
+            protocol.verboseMessageReceived(sender);
+        }
+        if (editedResource == null || !project.equals(editedResource[0]) || !resource.equals(editedResource[1])) {
+            /* received because another resource travels on the same channel */
+            ignoredMessages++;
+            return;
+        }
+        if ("liveResourceChanged".equals(message.getType())) {
+            receiveEdit(new LiveEdit(sender, (Integer)payload.get("sequence"), (Integer)payload.get("offset"),
+                                     (Integer)payload.get("removedCharCount"), (String)payload.get("addedCharacters")),
+                        (Double)payload.get("time"));
+        } else if ("lrc".equals(message.getType())) {
+            receiveEdit(new LiveEdit(sender, (Integer)data.get(2), (Integer)data.get(3), (Integer)data.get(4), (String)data.get(5)),
+                        (Double)data.get(8));
+        } else if ("liveCursorOffsetChanged".equals(message.getType())) {
+            cursorDelays.add(now() - (Double)payload.get("time"));
+        } else if ("lcc".equals(message.getType())) {
+            cursorDelays.add(now() - (Double)data.get(3));
+        }
+    }
+
+    /** Handles the messages of the compact protocol's handshake, returns false for the others. */
+    private boolean receiveControl(FluxStandInServer.Message message) {
+        Map<String, Object> payload = message.getPayload();
+        if ("liveEditWelcome".equals(message.getType())) {
+            protocol.serverWelcomed();
+        } else if ("liveEditHello".equals(message.getType())) {
+            int localPeer = protocol.getLocalPeer();
+            boolean reply = Boolean.TRUE.equals(payload.get("reply"));
+            protocol.helloReceived((Integer)payload.get("peer"), (String)payload.get("channelName"), peer, reply);
+            if (!reply || localPeer != protocol.getLocalPeer()) {
+                sayHello(localPeer == protocol.getLocalPeer());
+            }
+        } else if ("liveEditResource".equals(message.getType())) {
+            List<?> data = (List<?>)payload.get("d");
+            protocol.resourceDefined((Integer)data.get(0), (Integer)data.get(1), (String)data.get(2), (String)data.get(3));
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private void receiveEdit(LiveEdit edit, double time) {
+        /* our edit still buffered is sent before the remote one is applied, as the plugin does */
+        flush();
+        List<LiveEdit> readyEdits = sequencer.receive(edit);
+        if (sequencer.hasGap(edit.getPeer())) {
+            gaps++;
+        }
+        for (LiveEdit readyEdit : readyEdits) {
+            if (readyEdit.getOffset() + readyEdit.getRemovedCharCount() > text.length()) {
+                outOfRangeEdits++;
+            }
+            apply(readyEdit.getOffset(), readyEdit.getRemovedCharCount(), readyEdit.getAddedCharacters());
+            if (readyEdit.getOffset() < cursor) {
+                cursor = Math.max(readyEdit.getOffset(), cursor - readyEdit.getRemovedCharCount())
+                         + readyEdit.getAddedCharacters().length();
+            }
+        }
+        editDelays.add(now() - time);
+    }
+
+    private void apply(int offset, int removedCharCount, String addedCharacters) {
+        offset = Math.max(0, Math.min(offset, text.length()));
+        removedCharCount = Math.max(0, Math.min(removedCharCount, text.length() - offset));
+        checksum.replace(text, offset, removedCharCount, addedCharacters);
+        text.replace(offset, removedCharCount, addedCharacters);
+    }
+
+    private void sayHello(boolean reply) {
+        Map<String, Object> hello = new HashMap<String, Object>();
+        hello.put("username", channel);
+        hello.put("channelName", peer);
+        hello.put("peer", protocol.getLocalPeer());
+        hello.put("reply", reply);
+        connection.emit("liveEditHello", hello);
+    }
+
+    /** Returns the id of the resource, announcing it first if needed. */
+    private int announceResource() {
+        int resourceId = protocol.getResourceId(project, resource);
+        if (protocol.markAnnounced(project, resource)) {
+            connection.emit("liveEditResource", compact(protocol.getLocalPeer(), resourceId, project, resource));
+        }
+        return resourceId;
+    }
+
+    private Map<String, Object> verbose() {
+        Map<String, Object> payload = new HashMap<String, Object>();
+        payload.put("username", channel);
+        payload.put("project", project);
+        payload.put("resource", resource);
+        payload.put("channelName", peer);
+        return payload;
+    }
+
+    private Map<String, Object> compact(Object... data) {
+        Map<String, Object> payload = new HashMap<String, Object>();
+        payload.put("username", channel);
+        payload.put("d", Arrays.asList(data));
+        return payload;
+    }
+
+    private String randomCharacters(int count) {
+        StringBuilder characters = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            characters.append(CHARACTERS.charAt(random.nextInt(CHARACTERS.length())));
+        }
+        return characters.toString();
+    }
+
+    /**
+     * The time of the next action of a Poisson process of the given rate, in actions per second, right away if
+     * the rate is not positive.
+     */
+    private long nextTime(long previous, double rate) {
+        if (rate <= 0) {
+            return previous;
+        }
+        return previous + (long)(-Math.log(1 - random.nextDouble()) / rate * 1e9);
+    }
+
+    private static double now() {
+        return System.nanoTime() / 1e6;
+    }
+}